@@ -3,14 +3,15 @@ package photos.app;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
 import javafx.event.EventHandler;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -20,10 +21,14 @@ import javafx.scene.control.Alert.AlertType;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import photos.controller.LoginController;
+import photos.data.DataStore;
+import photos.image.ThumbnailCache;
 import photos.model.Album;
+import photos.model.ModelEvents;
 import photos.model.Photo;
 import photos.model.Tag;
 import photos.model.User;
+import photos.search.SearchIndex;
 
 /**
  * Class acts as the driver for the program, also where the data is set up to be loaded and saved
@@ -37,21 +42,27 @@ import photos.model.User;
 public class Photos extends Application {
 	
 	/**
-	 * array list containing all the people who have created user instance in the program
+	 * list containing all the people who have created user instance in the program, observed so added and deleted users are journaled
 	 */
-	private ArrayList<User> users;
+	private ObservableList<User> users;
 	
 	
 	/**
-	 * folder name where data file will b saved
+	 * folder name where data files will b saved
 	 */
 	private static final String dir = "data";
 	
 	
 	/**
-	 * data file that will save and load all the actions performed in the program
+	 * store that saves and loads all the actions performed in the program
 	 */
-	private static final String filename = "data.dat";
+	private DataStore store;
+	
+	
+	/**
+	 * cache of the thumbnails shown in the albums, kept in the data folder
+	 */
+	private ThumbnailCache thumbnails;
 	
 	
 	/**
@@ -201,52 +212,75 @@ public class Photos extends Application {
 	
 	
 	/**
-	 * creates an input stream to read in the data from previous sessions
+	 * reads in the users from previous sessions, their albums are only read once the user logs in
+	 * <p>
+	 * if there are no saved users, it is the first run of the program, so it will make an admin user,
+	 * along with stock user, with some photos pre-loaded into the user
 	 * <p>
-	 * if a data file is not present, it is the first run of the program, so it will create the file
-	 * and then make an admin user, along with stock user, with some photos pre-loaded into the user
+	 * once loaded, every change made to the users is journaled as it happens, and the users that changed
+	 * are saved in the background shortly after
+	 * <p>
+	 * if the saved users cannot be read, the error is shown and the program starts with the admin and stock
+	 * users, without saving anything over the saved users
 	 */
-	@SuppressWarnings("unchecked")
 	public void loadData(){
-		try{
-			FileInputStream fileIn = new FileInputStream(dir + File.separator + filename);
-			ObjectInputStream objIn = new ObjectInputStream(fileIn);
-			users = (ArrayList<User>) objIn.readObject();
-			if (users == null){
-				users = new ArrayList<User>();
-				users.add(new User("admin", "admin"));
-				addStockPhotos();
-			}
-			objIn.close();
-			fileIn.close();
+		thumbnails = new ThumbnailCache(new File(dir, "thumbnails"));
+		ThumbnailCache.setShared(thumbnails);
+		Photo.setThumbnailMaker(ThumbnailCache::thumbnail);
+		SearchIndex.setShared(new SearchIndex());
+		
+		store = new DataStore(new File(dir), Platform::runLater);
+		try{ users = FXCollections.observableArrayList(store.load()); }
+		catch(IOException e){
+			e.printStackTrace();
+			users = FXCollections.observableArrayList();
+			
+			// the saved users are still on disk, so nothing is saved over them this session
+			store = null;
+			
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Start Error");
+			alert.setHeaderText("Error loading saved users");
+			alert.setContentText("Can not read the saved users, the program starts with the default users and changes will not be saved: " + e.getMessage());
+			
+			alert.showAndWait();
 		}
-		catch(FileNotFoundException e){
-			users = new ArrayList<User>();
+		
+		// told about changes only once loaded, so replaying the journal doesn't queue renditions of its photos
+		thumbnails.setUsers(users);
+		ModelEvents.addListener(thumbnails);
+		ModelEvents.addListener(SearchIndex.getShared());
+		
+		users.addListener((ListChangeListener<User>) change -> {
+			while (change.next()){
+				for (User removed: change.getRemoved()){
+					if (store != null){ store.userRemoved(removed); }
+					thumbnails.userRemoved(removed);
+					SearchIndex.getShared().userRemoved(removed);
+				}
+				for (User added: change.getAddedSubList()){
+					if (store != null){ store.userAdded(added); }
+				}
+			}
+		});
+		
+		if (users.isEmpty()){
 			users.add(new User("admin", "admin"));
 			addStockPhotos();
 		}
-		catch(IOException e){ e.printStackTrace(); }
-		catch(ClassNotFoundException e){ e.printStackTrace(); }
 	}
 	
 	
 	
 	/**
-	 * creates a data file to save to if one does not already exist
+	 * saves what is still pending, upon a quit application action
 	 * <p>
-	 * makes an output stream to write all of the information to, upon a quit application action
+	 * only the files of the users that changed since the last background save are rewritten, and the
+	 * times the cached renditions were last used are written to them
 	 */
 	public void saveData(){
-		File file = new File(dir);
-		if (!file.exists()){ file.mkdir(); }
-		try{
-			FileOutputStream fileOut = new FileOutputStream(dir + File.separator + filename);
-			ObjectOutputStream objOut = new ObjectOutputStream(fileOut);
-			objOut.writeObject(users);
-			objOut.close();
-			fileOut.close();
-		}
-		catch(IOException e){ e.printStackTrace(); }
+		if (store != null){ store.save(); }
+		if (thumbnails != null){ thumbnails.writeUseTimes(); }
 	}
 
 	
@@ -5,7 +5,6 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import javafx.collections.FXCollections;
@@ -159,6 +158,10 @@ public class AddPhotoController {
 		users = listOfUsers;
 		currUser = user;
 		
+		// suggest the tags already used in the user's albums
+		TagCompletion.names(tagName, currUser);
+		TagCompletion.values(tagVal, currUser, () -> tagName.getText());
+		
 		listView.setOnMouseClicked((MouseEvent e) -> {
 			currTag = listView.getSelectionModel().getSelectedItem();
 			
@@ -184,7 +187,7 @@ public class AddPhotoController {
 		File sF = fc.showOpenDialog(null);
 		if(sF != null){			
 			Photo pic = new Photo(sF, " ");
-			if(!currAlbum.getPhotos().contains(pic)){
+			if(!currAlbum.contains(pic)){
 				int pos = sF.getName().lastIndexOf(".", sF.getName().length()-1);
 				String cap = sF.getName().substring(0, pos);
 				filePath.setText(sF.getAbsolutePath());
@@ -310,7 +313,6 @@ public class AddPhotoController {
 			ArrayList<Tag> tags = new ArrayList<Tag>();
 			for(Tag t: tagList){ tags.add(t); }
 			Photo newPic = new Photo(currFile, caption.getText(), tags);
-			Collections.sort(newPic.getTags(), (a, b) -> a.getName().compareTo(b.getName()));
 			currAlbum.addPhoto(newPic);
 		}
 		else{
@@ -2,7 +2,6 @@ package photos.controller;
 
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,7 +24,6 @@ import javafx.scene.control.DatePicker;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
@@ -35,6 +33,7 @@ import javafx.scene.text.FontWeight;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.util.Pair;
+import photos.image.ThumbnailLoader;
 import photos.model.Album;
 import photos.model.Photo;
 import photos.model.Tag;
@@ -104,6 +103,12 @@ public class EditPhotoController {
 	private Stage stage;
 
 	
+	/**
+	 * loads the preview of the photo off the application thread
+	 */
+	private final ThumbnailLoader thumbnail = new ThumbnailLoader();
+
+	
 	/**
 	 * starts the edit scene setting the titles and displaying text areas, allows more text areas to be created
 	 * @param mainStage stage currently being shown
@@ -123,8 +128,9 @@ public class EditPhotoController {
 		givenTags = new ArrayList<Pair<Text, TextField>>();
 		customTags = new ArrayList<Pair<TextField, TextField>>();
 
-		for (int i = 0; i < photo.getTags().size(); i++) {
-			Tag tag = photo.getTags().get(i);
+		List<Tag> photoTags = photo.getTags();
+		for (int i = 0; i < photoTags.size(); i++) {
+			Tag tag = photoTags.get(i);
 			boolean newTagName = true;
 
 			for (int j = 0; j < givenTags.size(); j++) {
@@ -165,7 +171,7 @@ public class EditPhotoController {
 
 		photo.setCaption(captionField.getText());
 
-		photo.getTags().clear();
+		ArrayList<Tag> newTags = new ArrayList<Tag>();
 
 		for (int i = 0; i < givenTags.size(); i++) {
 			String tagName = givenTags.get(i).getKey().getText();
@@ -175,7 +181,7 @@ public class EditPhotoController {
 				StringTokenizer tokenizer = new StringTokenizer(valueEntry, ",");
 
 				while (tokenizer.hasMoreTokens())
-					photo.getTags().add(new Tag(tagName, tokenizer.nextToken().trim().toLowerCase()));
+					newTags.add(new Tag(tagName, tokenizer.nextToken().trim().toLowerCase()));
 			}
 		}
 
@@ -187,11 +193,12 @@ public class EditPhotoController {
 				StringTokenizer tokenizer = new StringTokenizer(valueEntry, ",");
 
 				while (tokenizer.hasMoreTokens())
-					photo.getTags().add(new Tag(tagName, tokenizer.nextToken().trim().toLowerCase()));
+					newTags.add(new Tag(tagName, tokenizer.nextToken().trim().toLowerCase()));
 			}
 		}
 
-		Collections.sort(photo.getTags(), (a, b) -> a.getName().compareTo(b.getName()));
+		Collections.sort(newTags, (a, b) -> a.getName().compareTo(b.getName()));
+		photo.setTags(newTags);
 		
 		back();
 	}
@@ -263,17 +270,11 @@ public class EditPhotoController {
 
 		vBox.getChildren().add(mainLabel);
 
-		File imageFile = photo.getFile();
-		ImageView imageView;
-		try {
-			Image image = new Image(new FileInputStream(imageFile), 150, 0, true, true);
-			imageView = new ImageView(image);
-			imageView.setFitWidth(150);
-
-			vBox.getChildren().add(imageView);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
+		// the grid's rendition is the size of the preview; it may have to be made, so it loads in the background
+		ImageView imageView = new ImageView(ThumbnailLoader.placeholder(150));
+		imageView.setFitWidth(150);
+		vBox.getChildren().add(imageView);
+		thumbnail.load(photo, 150, imageView::setImage);
 
 		GridPane grid = new GridPane();
 		grid.setPadding(new Insets(20, 0, 15, 0));
@@ -305,6 +306,9 @@ public class EditPhotoController {
 
 		int currentRow = 2;
 		for (int i = 0; i < givenTags.size(); i++) {
+			String name = givenTags.get(i).getKey().getText();
+			TagCompletion.values(givenTags.get(i).getValue(), user, () -> name);
+
 			grid.add(givenTags.get(i).getKey(), 1, currentRow);
 			grid.add(givenTags.get(i).getValue(), 2, currentRow);
 			currentRow++;
@@ -317,6 +321,8 @@ public class EditPhotoController {
 			public void handle(ActionEvent event) {
 				TextField newName = new TextField();
 				TextField newValue = new TextField();
+				TagCompletion.names(newName, user);
+				TagCompletion.values(newValue, user, () -> newName.getText());
 
 				int indexToAddNextTag = GridPane.getRowIndex(addTag);
 				grid.getChildren().remove(addTag);
@@ -9,26 +9,14 @@ import java.util.List;
 import java.util.Optional;
 
 import javafx.event.ActionEvent;
-import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceDialog;
-import javafx.scene.control.Label;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.input.MouseButton;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.TilePane;
-import javafx.scene.layout.VBox;
-import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import photos.model.Album;
 import photos.model.Photo;
@@ -46,9 +34,9 @@ public class InboxController {
 
 	
 	/**
-	 * tile pane to display the photos
+	 * grid displaying the photos
 	 */
-	@FXML TilePane tileP;
+	@FXML PhotoGrid grid;
 	
 	
 	/**
@@ -111,79 +99,46 @@ public class InboxController {
 		currUser = user;
 		stage = mainStage;
 		stage.setTitle("Inbox");
+		grid.setOnSelect(photo -> currPic = photo);
+		grid.setOnOpen(this::openSlideShow);
 		displayAlbum();
 	}
 	
 	
 	
-	/**
-	 * creates the thumbnail for the photo
-	 * @param pic photo to create a image of
-	 * @return reduced image of photo
-	 */
-	private ImageView createImageView(Photo pic) {
-		final File imageFile = pic.getFile();
-        ImageView imageView = null;
-        try {   	
-        	//thumb nail for picture
-            final Image image = new Image(new FileInputStream(imageFile), 150, 0, true, true);
-            imageView = new ImageView(image);
-            imageView.setFitWidth(150);
-            imageView.setUserData(pic);
-        }
-        catch (FileNotFoundException e) { e.printStackTrace(); }
-        return imageView;
-    }
 	
 	/**
-	 * displays all the photos with their captions in the album
+	 * displays the photos with their captions in the grid, only the rows on screen are created
 	 * <p>
 	 * casts a shadow around the selected photo, if photo is double clicked, brings up slide show view
 	 */
 	public void displayAlbum(){
-		tileP.getChildren().clear();
-		for(Photo pic: currUser.getInbox().getPhotos()){
-			ImageView imgV = createImageView(pic);
-			VBox v = new VBox();
-			Label cap = new Label(pic.getCaption());
-			v.getChildren().addAll(imgV, cap);
-			v.setAlignment(Pos.CENTER);
-			tileP.getChildren().add(v);
-			
-			v.setOnMouseClicked(new EventHandler<MouseEvent>() {
-                @Override
-                public void handle(MouseEvent mouseEvent) {
-                    
-                	for (Node n : tileP.getChildren()){
-						n.setEffect(null);
-					}
-                	v.setEffect(new DropShadow(20, Color.RED));
-					currPic = (Photo) imgV.getUserData();
-					
-					if(mouseEvent.getButton().equals(MouseButton.PRIMARY)){
-                    	//double click, bring up enlarged image in slide show mode
-                        if(mouseEvent.getClickCount() == 2){
-                            	FXMLLoader loader = new FXMLLoader();
-        		            	AnchorPane root = null;
-        		            	FileInputStream inputStream = null;
-        						try { inputStream = new FileInputStream(new File("src/photos/view/slide_show.fxml")); }
-        						catch (FileNotFoundException e) { e.printStackTrace(); }
-        						try { root = (AnchorPane) loader.load(inputStream); }
-        						catch (IOException e) { e.printStackTrace(); }
-        						Stage newStage = new Stage();
-        						SlideShowController slideShowController = loader.getController();
-        		    			try { slideShowController.start(newStage, currUser.getInbox().getPhotos(), pic); }
-        		    			catch (FileNotFoundException e) { e.printStackTrace(); }
-        		    			Scene slideShowScene = new Scene(root, 640, 400);
-        		    			newStage.setScene(slideShowScene);
-        		    			newStage.setResizable(false);
-        		    			newStage.sizeToScene();
-        		    			newStage.show();
-                       } 
-                    } 
-                } 
-            }); 
-		}
+		grid.setPhotos(currUser.getInbox().getPhotos());
+	}
+
+
+	
+	/**
+	 * opens the given photo in a new slide show window
+	 * @param pic photo to show first
+	 */
+	private void openSlideShow(Photo pic){
+		FXMLLoader loader = new FXMLLoader();
+		AnchorPane root = null;
+		FileInputStream inputStream = null;
+		try { inputStream = new FileInputStream(new File("src/photos/view/slide_show.fxml")); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		try { root = (AnchorPane) loader.load(inputStream); }
+		catch (IOException e) { e.printStackTrace(); }
+		Stage newStage = new Stage();
+		SlideShowController slideShowController = loader.getController();
+		try { slideShowController.start(newStage, currUser.getInbox().getPhotos(), pic); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		Scene slideShowScene = new Scene(root, 640, 400);
+		newStage.setScene(slideShowScene);
+		newStage.setResizable(false);
+		newStage.sizeToScene();
+		newStage.show();
 	}
 	
 	
@@ -195,6 +150,7 @@ public class InboxController {
 	 * @throws IOException could not return to user's albums screen
 	 */
 	public void goBack(ActionEvent e) throws IOException{
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/users_albums.fxml"));
 		AnchorPane root = (AnchorPane) loader.load(inputStream);
@@ -230,13 +186,13 @@ public class InboxController {
 			
 			Optional<Album> result = dialog.showAndWait();
 			Album target = result.get();
-			if(target.getPhotos().contains(currPic)){
+			if(target.contains(currPic)){
 				Alert alert = new Alert(AlertType.ERROR);
 				alert.setTitle("Error Copying Photo");
 				alert.setHeaderText("The photo already exists in this album");
 				alert.showAndWait();	
 			}
-			else{ target.getPhotos().add(currPic); }	
+			else{ target.addPhoto(currPic); }	
 		}
 		
 		
@@ -293,14 +249,14 @@ public class InboxController {
 			dialog.setHeaderText("Choose an album to move the photo to");
 			Optional<Album> result = dialog.showAndWait();
 			Album target = result.get();
-			if(target.getPhotos().contains(currPic)){
+			if(target.contains(currPic)){
 				Alert alert = new Alert(AlertType.ERROR);
 				alert.setTitle("Error Moving Photo");
 				alert.setHeaderText("The photo already exists in this album");
 				alert.showAndWait();	
 			}
 			else{
-				target.getPhotos().add(currPic);
+				target.addPhoto(currPic);
 				currUser.getInbox().removePhoto(currPic);
 				currPic = null;
 				displayAlbum();
@@ -0,0 +1,164 @@
+package photos.controller;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.util.Duration;
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.User;
+import photos.search.Facet;
+import photos.search.FacetCounter;
+import photos.search.IntSet;
+import photos.search.Query;
+import photos.search.QueryPlanner;
+import photos.search.SearchIndex;
+import photos.search.UserIndex;
+
+/**
+ * Runs searches in the background as the user types, showing the results of the latest one.
+ *
+ * <p>
+ * A search only starts once the user stops typing for {@link #DEBOUNCE_MILLIS DEBOUNCE_MILLIS}, so a
+ * burst of keystrokes costs one search. Asking for a new search cancels the one before it: if it hasn't
+ * started it never runs, and if it has its results are dropped. The results are handed over all at once;
+ * the grid they go to only lays out the rows on screen, so a large result shows as fast as a small one.
+ * The tag names and values of the photos found are counted along with each search.
+ * </p>
+ *
+ * <p>
+ * Meant to be used from the JavaFX application thread.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class LiveSearch {
+
+	/**
+	 * How long the user has to stop typing before searching.
+	 */
+	public static final int DEBOUNCE_MILLIS = 150;
+
+	/**
+	 * Thread running the searches of every screen. Only the latest search is wanted, so one is enough.
+	 */
+	private static final ExecutorService searcher = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "live-search");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final UserIndex index;
+
+	private final Album album;
+
+	private final BiConsumer<List<Photo>, Integer> shown;
+
+	private final Consumer<List<Facet>> counted;
+
+	/**
+	 * Counts the tags of the photos found. Only used on the search thread.
+	 */
+	private final FacetCounter facets;
+
+	private final PauseTransition debounce = new PauseTransition(Duration.millis(DEBOUNCE_MILLIS));
+
+	/**
+	 * Counts the searches asked for. A search only runs, and its results are only handed over, while it is
+	 * the latest.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * The query waiting for the user to stop typing.
+	 */
+	private Query waiting;
+
+	/**
+	 * Creates a live search of a user's photos.
+	 *
+	 * @param user
+	 *            user who is searching
+	 * @param album
+	 *            album to search, or <code>null</code> to search all of the user's albums
+	 * @param shown
+	 *            given the results on the JavaFX application thread: the photos found, in the order to show
+	 *            them, and their number
+	 * @param counted
+	 *            given the tag names and values of the photos found on the JavaFX application thread, before
+	 *            the photos
+	 */
+	public LiveSearch(User user, Album album, BiConsumer<List<Photo>, Integer> shown,
+			Consumer<List<Facet>> counted) {
+		this.index = SearchIndex.getShared().forUser(user);
+		this.album = album;
+		this.shown = shown;
+		this.counted = counted;
+		this.facets = new FacetCounter(index);
+
+		debounce.setOnFinished(event -> start(waiting));
+	}
+
+	/**
+	 * Searches for a query once the user stops typing, cancelling the search before it.
+	 *
+	 * @param query
+	 *            query to run, or <code>null</code> for every photo searched
+	 */
+	public void search(Query query) {
+		generation.incrementAndGet();
+		waiting = query;
+		debounce.playFromStart();
+	}
+
+	/**
+	 * Cancels the search waiting or running, when the query is cleared or the screen is left.
+	 */
+	public void cancel() {
+		generation.incrementAndGet();
+		waiting = null;
+		debounce.stop();
+	}
+
+	private void start(Query query) {
+		int asked = generation.incrementAndGet();
+
+		searcher.submit(() -> {
+			if (generation.get() != asked)
+				return;
+
+			int[] found;
+			List<Facet> tags;
+			List<Photo> results;
+
+			// the index is changed on the JavaFX application thread, so it is held still while it is read
+			synchronized (index) {
+				IntSet scope = album == null ? index.all() : index.inAlbum(album);
+				QueryPlanner planner = new QueryPlanner(index, scope);
+
+				IntSet matched = query == null ? scope : planner.run(query);
+				if (generation.get() != asked)
+					return;
+
+				tags = facets.count(matched);
+				found = query == null ? matched.toArray() : planner.rank(query, matched);
+				results = index.photos(found);
+			}
+
+			Platform.runLater(() -> {
+				if (generation.get() != asked)
+					return;
+
+				counted.accept(tags);
+				shown.accept(results, found.length);
+			});
+		});
+	}
+}
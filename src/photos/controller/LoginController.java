@@ -115,6 +115,9 @@ public class LoginController {
 
 		loggingInUser = userList.get(indexOfUser);
 
+		// reads the user's albums, which are not loaded until the user logs in
+		loggingInUser.load();
+
 		if (loggingInUser.getUserName().equals("admin")) {
 			FXMLLoader loader = new FXMLLoader();
 			FileInputStream inputStream = new FileInputStream(new File("src/photos/view/admin_panel.fxml"));
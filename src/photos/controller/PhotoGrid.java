@@ -0,0 +1,363 @@
+package photos.controller;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.effect.DropShadow;
+import javafx.scene.image.ImageView;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
+import photos.image.ThumbnailLoader;
+import photos.model.Photo;
+
+/**
+ * Shows photos as a scrolling grid of thumbnails with their captions.
+ *
+ * <p>
+ * Each row of the grid is a cell of a <code>ListView</code>, so only the rows on screen have nodes, and the
+ * same few cells are reused for other rows while scrolling. The grid doesn't copy the photos; it reads
+ * them from the list given to {@link #setPhotos(List) setPhotos} when a row is shown, so showing 50 or
+ * 50,000 photos costs the same.
+ * </p>
+ *
+ * <p>
+ * Clicking a photo selects it and casts a shadow around it. Double clicking a photo opens it.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class PhotoGrid extends ListView<Integer> {
+
+	/**
+	 * Width of the thumbnails.
+	 */
+	private static final int THUMBNAIL_WIDTH = 150;
+
+	/**
+	 * Height of a row: the thumbnail, its caption and the space around them.
+	 */
+	private static final double ROW_HEIGHT = THUMBNAIL_WIDTH + 45;
+
+	/**
+	 * Space between the photos of a row.
+	 */
+	private static final double GAP = 45;
+
+	/**
+	 * The rows of the grid, by number.
+	 */
+	private final Rows rows = new Rows();
+
+	/**
+	 * Loads the thumbnails of the photos on screen.
+	 */
+	private final ThumbnailLoader thumbnails = new ThumbnailLoader();
+
+	/**
+	 * The photos being shown.
+	 */
+	private List<Photo> photos = Collections.emptyList();
+
+	/**
+	 * Number of photos in a row.
+	 */
+	private int columns = 3;
+
+	/**
+	 * The selected photo.
+	 */
+	private Photo selected;
+
+	/**
+	 * Place of the selected photo in {@link #photos photos}, so a new list is checked for it without
+	 * searching.
+	 */
+	private int selectedIndex = -1;
+
+	/**
+	 * Told about the photo that was selected.
+	 */
+	private Consumer<Photo> onSelect = photo -> {
+	};
+
+	/**
+	 * Told about the photo that was double clicked.
+	 */
+	private Consumer<Photo> onOpen = photo -> {
+	};
+
+	/**
+	 * Creates an empty grid.
+	 */
+	public PhotoGrid() {
+		super();
+		setItems(rows);
+		setFixedCellSize(ROW_HEIGHT);
+		setFocusTraversable(false);
+		setCellFactory(list -> new RowCell());
+	}
+
+	/**
+	 * Shows the given photos, in their order. Called again after the list changes to show the change.
+	 *
+	 * <p>
+	 * The selected photo stays selected if it is still in the same place in the list, as after a caption
+	 * changes; otherwise nothing is selected. The list is not searched for it, so setting even a very large
+	 * list costs nothing more than the rows on screen.
+	 * </p>
+	 *
+	 * @param photos
+	 *            photos to show
+	 */
+	public void setPhotos(List<Photo> photos) {
+		this.photos = photos;
+
+		if (selected != null && (selectedIndex >= photos.size() || photos.get(selectedIndex) != selected))
+			select(null, -1);
+
+		rows.setSize((photos.size() + columns - 1) / columns);
+		refresh();
+	}
+
+	/**
+	 * Gets the selected photo.
+	 *
+	 * @return the selected photo, or <code>null</code> if none is
+	 */
+	public Photo getSelected() {
+		return selected;
+	}
+
+	/**
+	 * Sets what happens when a photo is selected.
+	 *
+	 * @param onSelect
+	 *            given the selected photo, or <code>null</code> when the selected photo is no longer shown
+	 */
+	public void setOnSelect(Consumer<Photo> onSelect) {
+		this.onSelect = onSelect;
+	}
+
+	/**
+	 * Sets what happens when a photo is double clicked.
+	 *
+	 * @param onOpen
+	 *            given the double clicked photo
+	 */
+	public void setOnOpen(Consumer<Photo> onOpen) {
+		this.onOpen = onOpen;
+	}
+
+	/**
+	 * Gets the number of photos in a row.
+	 *
+	 * @return photos per row
+	 */
+	public int getColumns() {
+		return columns;
+	}
+
+	/**
+	 * Sets the number of photos in a row. Must be set before the grid is shown.
+	 *
+	 * @param columns
+	 *            photos per row
+	 */
+	public void setColumns(int columns) {
+		this.columns = columns;
+	}
+
+	/**
+	 * Stops loading thumbnails, when the screen showing the grid is left.
+	 */
+	public void cancelLoads() {
+		thumbnails.cancel();
+	}
+
+	private void select(Photo photo, int index) {
+		selected = photo;
+		selectedIndex = index;
+		onSelect.accept(photo);
+	}
+
+	/**
+	 * One row of photos. The tiles are made once and given other photos as the cell is reused.
+	 */
+	private class RowCell extends ListCell<Integer> {
+
+		private final Tile[] tiles = new Tile[columns];
+
+		private final HBox box = new HBox(GAP);
+
+		RowCell() {
+			for (int i = 0; i < tiles.length; i++) {
+				tiles[i] = new Tile();
+				box.getChildren().add(tiles[i]);
+			}
+
+			box.setPadding(new Insets(10, 0, 0, 30));
+			setStyle("-fx-background-color: transparent; -fx-padding: 0;");
+		}
+
+		@Override
+		protected void updateItem(Integer row, boolean empty) {
+			super.updateItem(row, empty);
+
+			if (empty || row == null) {
+				for (Tile tile : tiles)
+					tile.show(null, -1);
+				setGraphic(null);
+				return;
+			}
+
+			for (int i = 0; i < tiles.length; i++) {
+				int index = row * columns + i;
+				tiles[i].show(index < photos.size() ? photos.get(index) : null, index);
+			}
+			setGraphic(box);
+		}
+	}
+
+	/**
+	 * One photo: its thumbnail over its caption.
+	 */
+	private class Tile extends VBox {
+
+		private final ImageView view = new ImageView();
+
+		private final Label caption = new Label();
+
+		private Photo photo;
+
+		/**
+		 * Place of {@link #photo photo} in the grid's list.
+		 */
+		private int index = -1;
+
+		private Future<?> load;
+
+		Tile() {
+			view.setFitWidth(THUMBNAIL_WIDTH);
+			view.setFitHeight(THUMBNAIL_WIDTH);
+			view.setPreserveRatio(true);
+			caption.setMaxWidth(THUMBNAIL_WIDTH);
+
+			setPrefWidth(THUMBNAIL_WIDTH);
+			setAlignment(Pos.CENTER);
+			getChildren().addAll(view, caption);
+
+			setOnMouseClicked(mouseEvent -> {
+				if (photo == null)
+					return;
+
+				select(photo, index);
+				refresh();
+
+				// double click, bring up enlarged image
+				if (mouseEvent.getButton().equals(MouseButton.PRIMARY) && mouseEvent.getClickCount() == 2)
+					onOpen.accept(photo);
+			});
+		}
+
+		/**
+		 * Shows a photo in the tile, or nothing if <code>null</code>.
+		 */
+		void show(Photo shown, int at) {
+			index = at;
+			setEffect(shown != null && shown == selected ? new DropShadow(20, Color.RED) : null);
+
+			if (shown != null)
+				caption.setText(shown.getCaption());
+
+			if (shown == photo)
+				return;
+
+			if (load != null)
+				load.cancel(false);
+			load = null;
+			photo = shown;
+			setVisible(shown != null);
+
+			if (shown == null) {
+				view.setImage(null);
+				return;
+			}
+
+			view.setImage(ThumbnailLoader.placeholder(THUMBNAIL_WIDTH));
+			load = thumbnails.load(shown, THUMBNAIL_WIDTH, image -> {
+				if (photo == shown)
+					view.setImage(image);
+			});
+		}
+	}
+
+	/**
+	 * The row numbers 0 to size - 1, without storing them.
+	 */
+	private static class Rows extends ObservableListBase<Integer> {
+
+		private int size;
+
+		void setSize(int newSize) {
+			if (newSize == size)
+				return;
+
+			beginChange();
+			if (newSize < size)
+				nextRemove(newSize, new Range(newSize, size));
+			else
+				nextAdd(size, newSize);
+			size = newSize;
+			endChange();
+		}
+
+		@Override
+		public Integer get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException(String.valueOf(index));
+			return index;
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * The numbers from one number up to another, without storing them.
+	 */
+	private static class Range extends AbstractList<Integer> {
+
+		private final int from;
+
+		private final int to;
+
+		Range(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Integer get(int index) {
+			return from + index;
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
@@ -11,28 +11,28 @@ import java.util.Optional;
 import javafx.event.EventHandler;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
-import javafx.scene.control.Label;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
 import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
-import javafx.scene.layout.TilePane;
-import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import photos.model.Album;
 import photos.model.Photo;
+import photos.model.SmartAlbum;
 import photos.model.User;
+import photos.search.Query;
+import photos.search.QueryPlanner;
+import photos.search.SearchIndex;
+import photos.search.SmartAlbumPhotos;
+import photos.search.UserIndex;
 
 /**
  * Class controller to perform actions on the resulting search photos results
@@ -47,9 +47,15 @@ public class SearchResultsController {
 
 	
 	/**
-	 * tile pane to display the photos
+	 * grid displaying the photos
 	 */
-	@FXML TilePane tileP;
+	@FXML PhotoGrid grid;
+
+	
+	/**
+	 * button to save the search as a smart album
+	 */
+	@FXML Button saveSearch;
 
 	
 	/**
@@ -76,6 +82,18 @@ public class SearchResultsController {
 	private Album album;
 
 	
+	/**
+	 * smart album being shown, null if the results are from a search
+	 */
+	private SmartAlbum smartAlbum;
+
+	
+	/**
+	 * search that found the results, null if it can't be saved
+	 */
+	private Query query;
+
+	
 	/**
 	 * stage to be displayed
 	 */
@@ -96,10 +114,47 @@ public class SearchResultsController {
 		this.user = user;
 		this.photos = photos;
 
+		saveSearch.setDisable(true);
+		grid.setOnOpen(this::openSlideShow);
 		displayAlbum();
 	}
 
 	
+	/**
+	 * shows the photos of a smart album, best match first, without searching again
+	 * @param mainStage search results scene
+	 * @param listOfUsers user list
+	 * @param user current user
+	 * @param smartAlbum smart album to show
+	 */
+	public void start(Stage mainStage, List<User> listOfUsers, User user, SmartAlbum smartAlbum) {
+		UserIndex index = SearchIndex.getShared().forUser(user);
+		SmartAlbumPhotos members = index.inSmartAlbum(smartAlbum);
+
+		List<Photo> found;
+		if (members.getQuery() == null)
+			found = new ArrayList<Photo>();
+		else
+			found = index.photos(new QueryPlanner(index, index.all()).rank(members.getQuery(), members.ids()));
+
+		start(mainStage, listOfUsers, user, found);
+		stage.setTitle(smartAlbum.getName());
+		this.smartAlbum = smartAlbum;
+	}
+
+	
+	/**
+	 * sets the search that found the results, so they can be saved as a smart album
+	 * <p>
+	 * only searches of all the user's albums can be saved
+	 * @param query search that was run, null if only the photos were listed
+	 */
+	public void setQuery(Query query) {
+		this.query = query;
+		saveSearch.setDisable(query == null || album != null || smartAlbum != null);
+	}
+
+	
 	/**
 	 * displays the search results from the album
 	 * @param mainStage search results scene
@@ -115,16 +170,35 @@ public class SearchResultsController {
 		this.album = album;
 		this.photos = photos;
 
+		saveSearch.setDisable(true);
+		grid.setOnOpen(this::openSlideShow);
 		displayAlbum();
 	}
 
 	
 	
 	/**
-	 * back button clicked, go back to search screen
+	 * back button clicked, go back to search screen, or to the albums list if a smart album was shown
 	 * @throws IOException could not return to previous search screen
 	 */
 	public void back() throws IOException {
+		grid.cancelLoads();
+
+		if (smartAlbum != null) {
+			FXMLLoader loader = new FXMLLoader();
+			FileInputStream inputStream = new FileInputStream(new File("src/photos/view/users_albums.fxml"));
+			Parent root = (Parent) loader.load(inputStream);
+
+			UsersAlbumsController usersAlbumsController = loader.<UsersAlbumsController>getController();
+			usersAlbumsController.start(stage, userList, user);
+
+			Scene albumsScene = new Scene(root, 640, 400);
+			stage.setScene(albumsScene);
+			stage.sizeToScene();
+			stage.show();
+			return;
+		}
+
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/search_screen.fxml"));
 		Parent root = (Parent) loader.load(inputStream);
@@ -184,9 +258,11 @@ public class SearchResultsController {
 			return;
 		}
 
-		user.getAlbums().add(newAlbum);
-		newAlbum.getPhotos().addAll(photos);
+		user.addAlbum(newAlbum);
+		for (Photo photo : photos)
+			newAlbum.addPhoto(photo);
 
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/SingleAlbum.fxml"));
 		Parent root = (Parent) loader.load(inputStream);
@@ -202,38 +278,82 @@ public class SearchResultsController {
 
 	
 	/**
-	 * for each photo in the results list, a thumb nail will be created and displayed
+	 * save search button clicked, saves the search as a smart album, can not have two smart albums with the same name
+	 * <p>
+	 * the smart album is listed with the user's albums, and photos added later that match the search are in it too
 	 */
-	private void displayAlbum() {
-		tileP.getChildren().clear();
-		for (Photo photo : photos) {
-			ImageView imgV = createImageView(photo);
-			VBox v = new VBox();
-			Label cap = new Label(photo.getCaption());
-			v.getChildren().addAll(imgV, cap);
-			v.setAlignment(Pos.CENTER);
-			tileP.getChildren().add(v);
+	public void saveSearch() {
+		if (query == null)
+			return;
+
+		TextInputDialog dialog = new TextInputDialog();
+		dialog.setTitle("Save Search");
+		dialog.setHeaderText("Save the search as a smart album");
+		dialog.setContentText("Enter the name of the smart album:");
+
+		Optional<String> output = dialog.showAndWait();
+
+		if (!output.isPresent())
+			return;
+
+		if (output.get().isEmpty()) {
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Error saving search");
+			alert.setHeaderText("No smart album name was entered");
+			alert.setContentText("To save the search, click the save search button and enter a name for the smart album");
+
+			alert.showAndWait();
+			return;
+		}
+
+		SmartAlbum newSmartAlbum = new SmartAlbum(output.get(), query.toString());
+
+		if (!user.addSmartAlbum(newSmartAlbum)) {
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Error saving search");
+			alert.setHeaderText("Smart album already exists");
+			alert.setContentText("The entered name matches a smart album that already exists");
+
+			alert.showAndWait();
+			return;
 		}
+
+		saveSearch.setDisable(true);
 	}
+
 	
+	/**
+	 * shows the results in the grid, thumb nails are only created for the rows on screen
+	 * <p>
+	 * double clicking a photo will bring up slide show view
+	 */
+	private void displayAlbum() {
+		grid.setPhotos(photos);
+	}
+
 
 	
 	/**
-	 * helper method to create the thumb nail of the picture
-	 * @param photo picture to create a thumb nail of
-	 * @return resulting thumb nail of the photo
+	 * opens the given photo in a new slide show window
+	 * @param pic photo to show first
 	 */
-	private ImageView createImageView(Photo photo) {
-		final File imageFile = photo.getFile();
-		ImageView imageView = null;
-		try {
-			final Image image = new Image(new FileInputStream(imageFile), 150, 0, true, true);
-			imageView = new ImageView(image);
-			imageView.setFitWidth(150);
-			imageView.setUserData(photo);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		}
-		return imageView;
+	private void openSlideShow(Photo pic){
+		FXMLLoader loader = new FXMLLoader();
+		AnchorPane root = null;
+		FileInputStream inputStream = null;
+		try { inputStream = new FileInputStream(new File("src/photos/view/slide_show.fxml")); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		try { root = (AnchorPane) loader.load(inputStream); }
+		catch (IOException e) { e.printStackTrace(); }
+		Stage newStage = new Stage();
+		SlideShowController slideShowController = loader.getController();
+		try { slideShowController.start(newStage, photos, pic); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		Scene slideShowScene = new Scene(root, 640, 400);
+		newStage.setScene(slideShowScene);
+		newStage.setResizable(false);
+		newStage.sizeToScene();
+		newStage.show();
 	}
+	
 }
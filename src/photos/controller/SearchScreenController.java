@@ -3,9 +3,10 @@ package photos.controller;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.text.ParseException;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Calendar;
+import java.util.Collections;
 import java.util.List;
 import java.util.StringTokenizer;
 
@@ -37,6 +38,13 @@ import photos.model.Album;
 import photos.model.User;
 import photos.model.Photo;
 import photos.model.Tag;
+import photos.search.Facet;
+import photos.search.IntSet;
+import photos.search.Query;
+import photos.search.QueryParser;
+import photos.search.QueryPlanner;
+import photos.search.SearchIndex;
+import photos.search.UserIndex;
 
 
 /**
@@ -80,6 +88,49 @@ public class SearchScreenController {
 	private DatePicker endDatePicker;
 
 	
+	/**
+	 * area to type a query, like person:ed AND (location:mars OR location:earth) AND NOT show:* AND date:2014..2016,
+	 * words on their own search the captions
+	 */
+	private TextField queryValue;
+
+	
+	/**
+	 * most values shown for each tag name in the tag counts
+	 */
+	private static final int FACET_VALUES = 5;
+
+	
+	/**
+	 * shows the tag names and values of the photos matching the criteria, and how many have each
+	 */
+	private VBox facetBox;
+
+	
+	/**
+	 * check box to show the results below the search criteria as they are entered
+	 */
+	private CheckBox liveCheckBox;
+
+	
+	/**
+	 * tells how many photos the criteria entered so far match
+	 */
+	private Label liveStatus;
+
+	
+	/**
+	 * grid showing the photos the criteria entered so far match
+	 */
+	private PhotoGrid liveGrid;
+
+	
+	/**
+	 * searches in the background as the criteria are entered
+	 */
+	private LiveSearch liveSearch;
+
+	
 	/**
 	 * area to enter value for default tag of Person
 	 */
@@ -140,16 +191,8 @@ public class SearchScreenController {
 		userList = listOfUsers;
 		this.user = user;
 
-		photosToSearch = new ArrayList<Photo>();
-
-		for (int i = 0; i < user.getAlbums().size(); i++) {
-			Album albumToAdd = user.getAlbums().get(i);
-			for (int j = 0; j < albumToAdd.getPhotos().size(); j++) {
-				Photo photoToAdd = albumToAdd.getPhotos().get(j);
-				if (!photosToSearch.contains(photoToAdd))
-					photosToSearch.add(photoToAdd);
-			}
-		}
+		// a photo in more than one album is only searched once
+		photosToSearch = new ArrayList<Photo>(user.getCatalog().getAlbumPhotos());
 
 		customTags = new ArrayList<Pair<TextField, TextField>>();
 
@@ -187,13 +230,13 @@ public class SearchScreenController {
 	 *  <p>
 	 *  Example -> [Person] [Matt, Nick,Tom, Jason], will trim any leading and trailing spaces
 	 *  <p>
+	 *  a typed query is combined with the other fields, see {@link QueryParser} for how it is written
+	 *  <p>
 	 * after search is performed and the results are gathered, search results screen is displayed
 	 * @throws IOException could not perform the search
 	 */
 	public void search() throws IOException {
-		List<Photo> dateSearchResults, tagSearchResults, searchResults;
-		ArrayList<Tag> tagsToSearch;
-		LocalDate startDate, endDate, singleDate, photoDate;
+		List<Photo> searchResults;
 
 		if (!validCustomTags())
 			return;
@@ -208,39 +251,74 @@ public class SearchScreenController {
 			return;
 		}
 
-		dateSearchResults = new ArrayList<Photo>();
+		Query query;
+		try {
+			query = query();
+		} catch (ParseException e) {
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Error searching");
+			alert.setHeaderText(e.getMessage());
+			alert.setContentText("Check the query at character " + (e.getErrorOffset() + 1)
+					+ ". Example -> person:ed AND (location:mars OR location:earth) AND NOT show:* AND date:2014..2016");
 
-		startDate = startDatePicker.getValue();
-		endDate = endDatePicker.getValue();
-		singleDate = singleDatePicker.getValue();
+			alert.showAndWait();
+			return;
+		}
 
-		if (dateRangeCheckBox.isSelected()) {
-			if ((startDate != null) && (endDate != null)) {
-				for (int i = 0; i < photosToSearch.size(); i++) {
-					Calendar photoCalendar = photosToSearch.get(i).getDate();
+		if (query == null) {
+			searchResults = new ArrayList<Photo>(photosToSearch);
+		} else {
+			UserIndex index = SearchIndex.getShared().forUser(user);
+			IntSet scope = album == null ? index.all() : index.inAlbum(album);
 
-					photoDate = photoCalendar.toInstant().atZone(photoCalendar.getTimeZone().toZoneId()).toLocalDate();
+			QueryPlanner planner = new QueryPlanner(index, scope);
 
-					if (photoDate.isAfter(startDate) && photoDate.isBefore(endDate))
-						dateSearchResults.add(photosToSearch.get(i));
-				}
-			} else {
-				dateSearchResults = new ArrayList<Photo>(photosToSearch);
-			}
-		} else if (singleDate != null) {
-			for (int i = 0; i < photosToSearch.size(); i++) {
-				Calendar photoCalendar = photosToSearch.get(i).getDate();
+			// photos found by caption are listed best match first
+			searchResults = index.photos(planner.rank(query, planner.run(query)));
+		}
 
-				photoDate = photoCalendar.toInstant().atZone(photoCalendar.getTimeZone().toZoneId()).toLocalDate();
+		if (searchResults.size() == 0) {
+			Alert alert = new Alert(AlertType.INFORMATION);
+			alert.setTitle("Search complete");
+			alert.setHeaderText("No photos found");
 
-				if (photoDate.isEqual(singleDate))
-					dateSearchResults.add(photosToSearch.get(i));
-			}
-		} else
-			dateSearchResults = new ArrayList<Photo>(photosToSearch);
+			if (photosToSearch.size() > 1)
+				alert.setContentText(
+						"None of the " + photosToSearch.size() + " photos searched match the search criteria");
+			else
+				alert.setContentText("The one photo searched doesn't match the search criteria");
+
+			alert.showAndWait();
+			return;
+		}
 
-		tagSearchResults = new ArrayList<Photo>();
-		tagsToSearch = new ArrayList<Tag>();
+		leave();
+		FXMLLoader loader = new FXMLLoader();
+		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/search_results.fxml"));
+		Parent root = (Parent) loader.load(inputStream);
+
+		SearchResultsController searchResultsController = loader.<SearchResultsController>getController();
+
+		if (album == null)
+			searchResultsController.start(stage, userList, user, searchResults);
+		else
+			searchResultsController.start(stage, userList, user, album, searchResults);
+		searchResultsController.setQuery(query);
+
+		Scene resultsScene = new Scene(root, 640, 400);
+		stage.setScene(resultsScene);
+		stage.sizeToScene();
+		stage.show();
+	}
+
+	
+	/**
+	 * turns the entered search criteria into one query, custom tags missing a name or value are left out
+	 * @return the query, or null if nothing was entered
+	 * @throws ParseException the typed query could not be read
+	 */
+	private Query query() throws ParseException {
+		ArrayList<Tag> tagsToSearch = new ArrayList<Tag>();
 
 		if (!personValue.getText().isEmpty()) {
 			StringTokenizer tokenizer = new StringTokenizer(personValue.getText().trim(), ",");
@@ -269,55 +347,33 @@ public class SearchScreenController {
 			}
 		}
 
+		// the form and the typed query become one query, which the planner runs against the index from its
+		// most selective condition, so only the photos that match everything are looked at
+		List<Query> conditions = new ArrayList<Query>();
+
 		if (tagsToSearch.size() != 0) {
-			for (int i = 0; i < photosToSearch.size(); i++) {
-				Photo photo = photosToSearch.get(i);
-
-				for (int j = 0; j < tagsToSearch.size(); j++) {
-					if (photo.getTags().contains(tagsToSearch.get(j))) {
-						tagSearchResults.add(photo);
-						break;
-					}
-				}
-			}
-		} else {
-			tagSearchResults = new ArrayList<Photo>(photosToSearch);
+			List<Query> anyTag = new ArrayList<Query>();
+			for (Tag tag : tagsToSearch)
+				anyTag.add(Query.tag(tag.getName(), tag.getValue()));
+			conditions.add(Query.or(anyTag));
 		}
 
-		// searchResults is the intersection of tagSearchResults and dateSearchResults
-		searchResults = new ArrayList<Photo>(dateSearchResults);
-		searchResults.retainAll(tagSearchResults);
-
-		if (searchResults.size() == 0) {
-			Alert alert = new Alert(AlertType.INFORMATION);
-			alert.setTitle("Search complete");
-			alert.setHeaderText("No photos found");
-
-			if (photosToSearch.size() > 1)
-				alert.setContentText(
-						"None of the " + photosToSearch.size() + " photos searched match the search criteria");
-			else
-				alert.setContentText("The one photo searched doesn't match the search criteria");
+		LocalDate startDate = startDatePicker.getValue();
+		LocalDate endDate = endDatePicker.getValue();
+		LocalDate singleDate = singleDatePicker.getValue();
 
-			alert.showAndWait();
-			return;
+		if (dateRangeCheckBox.isSelected()) {
+			// the range doesn't include the start and end dates themselves
+			if ((startDate != null) && (endDate != null))
+				conditions.add(Query.dates(startDate.plusDays(1), endDate.minusDays(1)));
+		} else if (singleDate != null) {
+			conditions.add(Query.dates(singleDate, singleDate));
 		}
 
-		FXMLLoader loader = new FXMLLoader();
-		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/search_results.fxml"));
-		Parent root = (Parent) loader.load(inputStream);
-
-		SearchResultsController searchResultsController = loader.<SearchResultsController>getController();
-
-		if (album == null)
-			searchResultsController.start(stage, userList, user, searchResults);
-		else
-			searchResultsController.start(stage, userList, user, album, searchResults);
+		if (!queryValue.getText().trim().isEmpty())
+			conditions.add(QueryParser.parse(queryValue.getText()));
 
-		Scene resultsScene = new Scene(root, 640, 400);
-		stage.setScene(resultsScene);
-		stage.sizeToScene();
-		stage.show();
+		return conditions.isEmpty() ? null : Query.and(conditions);
 	}
 
 	
@@ -334,6 +390,9 @@ public class SearchScreenController {
 				return false;
 		}
 
+		if (!queryValue.getText().trim().isEmpty())
+			return false;
+
 		if (!personValue.getText().isEmpty())
 			return false;
 
@@ -393,6 +452,7 @@ public class SearchScreenController {
 	 * @throws IOException cant return to album view screen
 	 */
 	public void back() throws IOException {
+		leave();
 		if (album == null) {
 			// go back to all of users albums
 			FXMLLoader loader = new FXMLLoader();
@@ -424,6 +484,67 @@ public class SearchScreenController {
 
 	
 	
+	/**
+	 * runs the criteria entered so far in the background, to count the tags of the matching photos and,
+	 * while showing results as you type, show the photos below the criteria, only the latest criteria are
+	 * searched
+	 */
+	private void criteriaChanged() {
+		Query query;
+		try {
+			query = query();
+		} catch (ParseException e) {
+			// keep showing the last results until the query can be read again
+			liveSearch.cancel();
+			liveStatus.setText(e.getMessage() + " at character " + (e.getErrorOffset() + 1));
+			return;
+		}
+
+		if (liveCheckBox.isSelected())
+			liveStatus.setText("Searching...");
+		liveSearch.search(query);
+	}
+
+	
+	/**
+	 * shows how many of the photos matching the criteria have each tag name, and their most used values
+	 * @param facets the tag names of the matching photos, most used first
+	 */
+	private void showFacets(List<Facet> facets) {
+		facetBox.getChildren().clear();
+
+		if (facets.isEmpty()) {
+			facetBox.getChildren().add(new Label("None of these photos have tags"));
+			return;
+		}
+
+		for (Facet name : facets) {
+			StringBuilder text = new StringBuilder(name.getName() + " (" + name.getCount() + "):");
+
+			List<Facet> values = name.getValues(FACET_VALUES);
+			for (int i = 0; i < values.size(); i++)
+				text.append(i == 0 ? " " : ", ").append(values.get(i));
+
+			if (name.getValueCount() > values.size())
+				text.append(" and " + (name.getValueCount() - values.size()) + " more");
+
+			Label label = new Label(text.toString());
+			label.setWrapText(true);
+			label.setMaxWidth(500);
+			facetBox.getChildren().add(label);
+		}
+	}
+
+	
+	/**
+	 * stops searching and loading thumbnails in the background, when the search screen is left
+	 */
+	private void leave() {
+		liveSearch.cancel();
+		liveGrid.cancelLoads();
+	}
+
+	
 	/**
 	 * will create and display all the credentials in the search screen
 	 */
@@ -448,6 +569,46 @@ public class SearchScreenController {
 
 		vBox.getChildren().add(mainLabel);
 
+		// the tags there are to search for, counted again as the criteria are entered
+		Text facetText = new Text("Tags in these photos");
+		facetText.setFont(Font.font(null, FontWeight.BOLD, 12));
+
+		facetBox = new VBox(5);
+		facetBox.setAlignment(Pos.TOP_LEFT);
+		facetBox.setPadding(new Insets(5, 30, 10, 60));
+		facetBox.getChildren().add(new Label("Counting..."));
+
+		vBox.getChildren().addAll(facetText, facetBox);
+
+		GridPane queryGrid = new GridPane();
+		queryGrid.setPadding(new Insets(10, 0, 10, 0));
+		queryGrid.setHgap(10);
+		queryGrid.setVgap(10);
+		ColumnConstraints queryCol1 = new ColumnConstraints();
+		queryCol1.setPercentWidth(15);
+		ColumnConstraints queryCol2 = new ColumnConstraints();
+		queryCol2.setPercentWidth(70);
+		ColumnConstraints queryCol3 = new ColumnConstraints();
+		queryCol3.setPercentWidth(15);
+		queryGrid.getColumnConstraints().addAll(queryCol1, queryCol2, queryCol3);
+
+		Text queryText = new Text("Search by Query");
+		queryText.setFont(Font.font(null, FontWeight.BOLD, 12));
+		queryGrid.add(queryText, 1, 0);
+
+		queryValue = new TextField();
+		queryValue.setPromptText("beach sun* AND person:ed AND (location:mars OR location:earth) AND date:2014..2016");
+		queryValue.setOnAction(event -> {
+			try { search(); }
+			catch (IOException e) { e.printStackTrace(); }
+		});
+		queryGrid.add(queryValue, 1, 1);
+
+		liveCheckBox = new CheckBox("Show results as you type");
+		queryGrid.add(liveCheckBox, 1, 2);
+
+		vBox.getChildren().add(queryGrid);
+
 		GridPane dateGrid = new GridPane();
 		dateGrid.setPadding(new Insets(10, 0, 10, 0));
 		dateGrid.setHgap(10);
@@ -505,6 +666,10 @@ public class SearchScreenController {
 		};
 
 		dateRangeCheckBox.setOnAction(dateRangeEvent);
+		dateRangeCheckBox.selectedProperty().addListener(observable -> criteriaChanged());
+		singleDatePicker.valueProperty().addListener(observable -> criteriaChanged());
+		startDatePicker.valueProperty().addListener(observable -> criteriaChanged());
+		endDatePicker.valueProperty().addListener(observable -> criteriaChanged());
 
 		vBox.getChildren().add(dateGrid);
 
@@ -540,6 +705,9 @@ public class SearchScreenController {
 		locationValue.setPromptText("usa, colorado");
 		tagGrid.add(locationValue, 2, 2);
 
+		TagCompletion.values(personValue, user, () -> "person");
+		TagCompletion.values(locationValue, user, () -> "location");
+
 		Button addTag = new Button("Add Tag");
 
 		EventHandler<ActionEvent> addTagTextFields = new EventHandler<ActionEvent>() {
@@ -547,6 +715,10 @@ public class SearchScreenController {
 			public void handle(ActionEvent event) {
 				TextField newName = new TextField();
 				TextField newValue = new TextField();
+				TagCompletion.names(newName, user);
+				TagCompletion.values(newValue, user, () -> newName.getText());
+				newName.textProperty().addListener(observable -> criteriaChanged());
+				newValue.textProperty().addListener(observable -> criteriaChanged());
 
 				int indexToAddNextTag = GridPane.getRowIndex(addTag);
 				tagGrid.getChildren().remove(addTag);
@@ -566,5 +738,48 @@ public class SearchScreenController {
 		tagGrid.add(addTag, 1, 3);
 
 		vBox.getChildren().add(tagGrid);
+
+		// results as you type go below the criteria, hidden until asked for
+		liveStatus = new Label();
+		liveStatus.setPadding(new Insets(0, 0, 10, 0));
+
+		liveGrid = new PhotoGrid();
+		liveGrid.setPrefHeight(300);
+
+		VBox liveResults = new VBox(liveStatus, liveGrid);
+		liveResults.setAlignment(Pos.TOP_CENTER);
+		liveResults.setVisible(false);
+		liveResults.managedProperty().bind(liveResults.visibleProperty());
+		vBox.getChildren().add(liveResults);
+
+		liveSearch = new LiveSearch(user, album, (photos, found) -> {
+			if (!liveCheckBox.isSelected())
+				return;
+
+			liveGrid.setPhotos(photos);
+
+			if (found == 1)
+				liveStatus.setText("1 photo found");
+			else
+				liveStatus.setText(found + " photos found");
+		}, this::showFacets);
+
+		liveCheckBox.selectedProperty().addListener((observable, wasSelected, selected) -> {
+			liveResults.setVisible(selected);
+
+			if (selected) {
+				criteriaChanged();
+			} else {
+				liveGrid.cancelLoads();
+				liveGrid.setPhotos(Collections.<Photo>emptyList());
+			}
+		});
+
+		queryValue.textProperty().addListener(observable -> criteriaChanged());
+		personValue.textProperty().addListener(observable -> criteriaChanged());
+		locationValue.textProperty().addListener(observable -> criteriaChanged());
+
+		// count the tags of every photo searched, before any criteria are entered
+		criteriaChanged();
 	}
 }
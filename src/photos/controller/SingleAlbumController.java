@@ -5,7 +5,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -14,15 +13,10 @@ import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
-import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ChoiceDialog;
-import javafx.scene.control.Label;
-import javafx.scene.image.ImageView;
-import javafx.scene.layout.TilePane;
-import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import photos.model.Album;
@@ -33,21 +27,12 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import javafx.application.Application;
-import javafx.event.EventHandler;
 import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.control.Alert.AlertType;
-import javafx.scene.effect.DropShadow;
-import javafx.scene.image.Image;
-import javafx.scene.image.ImageView;
-import javafx.scene.input.MouseButton;
-import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.BorderPane;
-import javafx.scene.layout.TilePane;
-import javafx.scene.paint.Color;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
 
@@ -63,9 +48,9 @@ import javafx.stage.Stage;
 public class SingleAlbumController {
 
 	/**
-	 * tile pane to display the photos
+	 * grid displaying the photos
 	 */
-	@FXML TilePane tileP;
+	@FXML PhotoGrid grid;
 	
 	
 	/**
@@ -154,6 +139,8 @@ public class SingleAlbumController {
 		currAlbum = album;
 		stage = mainStage;
 		stage.setTitle(currAlbum.getName());
+		grid.setOnSelect(photo -> currPic = photo);
+		grid.setOnOpen(this::openSlideShow);
 		displayAlbum();	
 	}
 
@@ -179,25 +166,25 @@ public class SingleAlbumController {
 			return;
 		
 		if(alphaAscend.equals(result.get())) {
-			Collections.sort(currAlbum.getPhotos(), (a, b) -> a.getCaption().compareTo(b.getCaption()));
+			currAlbum.sortPhotos((a, b) -> a.getCaption().compareTo(b.getCaption()));
 			displayAlbum();
 			return;
 		}
 		
 		if(alphaDescend.equals(result.get())){
-			Collections.sort(currAlbum.getPhotos(), (b, a) -> a.getCaption().compareTo(b.getCaption()));
+			currAlbum.sortPhotos((b, a) -> a.getCaption().compareTo(b.getCaption()));
 			displayAlbum();
 			return;
 		}
 		
 		if(dateAscend.equals(result.get())) {
-			Collections.sort(currAlbum.getPhotos(), (a, b) -> a.getDate().compareTo(b.getDate()));
+			currAlbum.sortPhotos((a, b) -> Long.compare(a.getTime(), b.getTime()));
 			displayAlbum();
 			return;
 		}
 
 		if (dateDescend.equals(result.get())) {
-			Collections.sort(currAlbum.getPhotos(), (b, a) -> a.getDate().compareTo(b.getDate()));
+			currAlbum.sortPhotos((b, a) -> Long.compare(a.getTime(), b.getTime()));
 			displayAlbum();
 			return;
 		}
@@ -209,6 +196,7 @@ public class SingleAlbumController {
 	 * @throws IOException could not enter add photo scene
 	 */
 	public void addPhoto(ActionEvent e) throws IOException {                		
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/add_photo.fxml"));
 		Parent root = (Parent) loader.load(inputStream);
@@ -222,24 +210,6 @@ public class SingleAlbumController {
 	
 	
 	
-	/**
-	 * helper method to create a thumb nail of the enter photo
-	 * @param pic picture to resize
-	 * @return thumb nail of the picture
-	 */
-	private ImageView createImageView(Photo pic) {
-		final File imageFile = pic.getFile();
-        ImageView imageView = null;
-        try {   	
-        	//thumb nail for picture
-            final Image image = new Image(new FileInputStream(imageFile), 150, 0, true, true);
-            imageView = new ImageView(image);
-            imageView.setFitWidth(150);
-            imageView.setUserData(pic);
-        }
-        catch (FileNotFoundException e) { e.printStackTrace(); }
-        return imageView;
-    }
 	
 
 
@@ -250,6 +220,7 @@ public class SingleAlbumController {
 	 * @throws IOException could not go back to album list screen
 	 */
 	public void goBack(ActionEvent e) throws IOException{
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/users_albums.fxml"));
 		AnchorPane root = (AnchorPane) loader.load(inputStream);
@@ -274,6 +245,7 @@ public class SingleAlbumController {
 			alert.setContentText("To edit a photo select it by clicking on it and then click the edit button");
 			alert.showAndWait();
 		} else {
+			grid.cancelLoads();
 			FXMLLoader loader = new FXMLLoader();
 			FileInputStream inputStream = new FileInputStream(new File("src/photos/view/edit_photo.fxml"));
 			Parent root = (Parent) loader.load(inputStream);
@@ -304,6 +276,7 @@ public class SingleAlbumController {
 			return;
 		}
 
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/search_screen.fxml"));
 		Parent root = (Parent) loader.load(inputStream);
@@ -325,6 +298,7 @@ public class SingleAlbumController {
 	 * @throws IOException could not logout
 	 */
 	public void userLogout(ActionEvent e) throws IOException {
+		grid.cancelLoads();
 		FXMLLoader loader = new FXMLLoader();
 		FileInputStream inputStream = new FileInputStream(new File("src/photos/view/login.fxml"));
 		Parent root = (Parent) loader.load(inputStream);
@@ -359,54 +333,37 @@ public class SingleAlbumController {
 	
 	
 	/**
-	 * takes each photo in the album and creates a thumb nail for it, and sets it as select-able, displays thumb nail and caption
+	 * shows the photos of the album in the grid, which only creates thumb nails for the rows on screen, with their captions
 	 * <p>
 	 * double clicking a photo will bring up slide show view
 	 */
 	public void displayAlbum(){
-		tileP.getChildren().clear();
-		for(Photo pic: currAlbum.getPhotos()){
-			ImageView imgV = createImageView(pic);
-			VBox v = new VBox();
-			Label cap = new Label(pic.getCaption());
-			v.getChildren().addAll(imgV, cap);
-			v.setAlignment(Pos.CENTER);
-			tileP.getChildren().add(v);
-			
-			v.setOnMouseClicked(new EventHandler<MouseEvent>() {
-                @Override
-                public void handle(MouseEvent mouseEvent) {
-                    
-                	for (Node n : tileP.getChildren()){
-						n.setEffect(null);
-					}
-                	v.setEffect(new DropShadow(20, Color.RED));
-					currPic = (Photo) imgV.getUserData();
-					
-					if(mouseEvent.getButton().equals(MouseButton.PRIMARY)){
-                    	//double click, bring up enlarged image in slide show mode
-                        if(mouseEvent.getClickCount() == 2){
-                            	FXMLLoader loader = new FXMLLoader();
-        		            	AnchorPane root = null;
-        		            	FileInputStream inputStream = null;
-        						try { inputStream = new FileInputStream(new File("src/photos/view/slide_show.fxml")); }
-        						catch (FileNotFoundException e) { e.printStackTrace(); }
-        						try { root = (AnchorPane) loader.load(inputStream); }
-        						catch (IOException e) { e.printStackTrace(); }
-        						Stage newStage = new Stage();
-        						SlideShowController slideShowController = loader.getController();
-        		    			try { slideShowController.start(newStage, currAlbum.getPhotos(), pic); }
-        		    			catch (FileNotFoundException e) { e.printStackTrace(); }
-        		    			Scene slideShowScene = new Scene(root, 640, 400);
-        		    			newStage.setScene(slideShowScene);
-        		    			newStage.setResizable(false);
-        		    			newStage.sizeToScene();
-        		    			newStage.show();
-                       }
-                    }
-                }
-            });
-		}
+		grid.setPhotos(currAlbum.getPhotos());
+	}
+
+
+	
+	/**
+	 * opens the given photo in a new slide show window
+	 * @param pic photo to show first
+	 */
+	private void openSlideShow(Photo pic){
+		FXMLLoader loader = new FXMLLoader();
+		AnchorPane root = null;
+		FileInputStream inputStream = null;
+		try { inputStream = new FileInputStream(new File("src/photos/view/slide_show.fxml")); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		try { root = (AnchorPane) loader.load(inputStream); }
+		catch (IOException e) { e.printStackTrace(); }
+		Stage newStage = new Stage();
+		SlideShowController slideShowController = loader.getController();
+		try { slideShowController.start(newStage, currAlbum.getPhotos(), pic); }
+		catch (FileNotFoundException e) { e.printStackTrace(); }
+		Scene slideShowScene = new Scene(root, 640, 400);
+		newStage.setScene(slideShowScene);
+		newStage.setResizable(false);
+		newStage.sizeToScene();
+		newStage.show();
 	}
 	
 	
@@ -429,7 +386,7 @@ public class SingleAlbumController {
 			dialog.setHeaderText("Choose a user to send the photo to");
 			Optional<User> result = dialog.showAndWait();
 			User target = result.get();
-			if(target.getInbox().getPhotos().contains(currPic)){
+			if(target.getInbox().contains(currPic)){
 				Alert alert = new Alert(AlertType.ERROR);
 				alert.setTitle("Error Sending Photo");
 				alert.setHeaderText("This user has already recieved this photo");
@@ -482,13 +439,13 @@ public class SingleAlbumController {
 				return;
 			
 			Album target = result.get();
-			if(target.getPhotos().contains(currPic)){
+			if(target.contains(currPic)){
 				Alert alert = new Alert(AlertType.ERROR);
 				alert.setTitle("Error Copying Photo");
 				alert.setHeaderText("The photo already exists in this album");
 				alert.showAndWait();
 			}
-			else{ target.getPhotos().add(currPic); }	
+			else{ target.addPhoto(currPic); }	
 		}
 		
 		
@@ -532,14 +489,14 @@ public class SingleAlbumController {
 				return;
 			
 			Album target = result.get();
-			if(target.getPhotos().contains(currPic)){
+			if(target.contains(currPic)){
 				Alert alert = new Alert(AlertType.ERROR);
 				alert.setTitle("Error Moving Photo");
 				alert.setHeaderText("The photo already exists in this album");
 				alert.showAndWait();	
 			}
 			else{
-				target.getPhotos().add(currPic);
+				target.addPhoto(currPic);
 				currAlbum.removePhoto(currPic);
 				currPic = null;
 				displayAlbum();
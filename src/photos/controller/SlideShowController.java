@@ -1,24 +1,23 @@
 package photos.controller;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Calendar;
-import java.util.Collections;
-import java.util.Date;
+import java.util.List;
 
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.paint.Color;
 import javafx.stage.Stage;
+import photos.image.SlideShowBuffer;
+import photos.image.ThumbnailLoader;
 import photos.model.Photo;
 import photos.model.Tag;
 
@@ -32,6 +31,24 @@ import photos.model.Tag;
 
 
 public class SlideShowController {
+	
+	
+	/**
+	 * number of photos on each side of the current one to decode ahead of time
+	 */
+	private static final int PREFETCH = 3;
+
+	
+	/**
+	 * format of the date shown under the photo
+	 */
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+	
+	/**
+	 * format of the time shown under the photo
+	 */
+	private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("hh:mm:ss a");
 
 	
 	/**
@@ -84,7 +101,7 @@ public class SlideShowController {
 	/**
 	 * list of all the photos in the album
 	 */
-	private ArrayList<Photo> album = new ArrayList<Photo>();
+	private List<Photo> album = new ArrayList<Photo>();
 	
 	
 	/**
@@ -93,6 +110,12 @@ public class SlideShowController {
 	private int indx;
 	
 	
+	/**
+	 * keeps the photos around the current one decoded so moving through the album is instant
+	 */
+	private SlideShowBuffer buffer;
+	
+	
 	/**
 	 * 
 	 * @param mainStage current stage
@@ -100,10 +123,12 @@ public class SlideShowController {
 	 * @param picture current picture being displayed
 	 * @throws FileNotFoundException could not display the information
 	 */
-	public void start(Stage mainStage, ArrayList<Photo> temp, Photo picture) throws FileNotFoundException {
+	public void start(Stage mainStage, List<Photo> temp, Photo picture) throws FileNotFoundException {
 		album = temp;
 		indx = album.indexOf(picture);
 		stage = mainStage;
+		buffer = new SlideShowBuffer(album, 525, 325, PREFETCH);
+		stage.setOnHidden(e -> buffer.close());
 		setPic(picture);
 	}
 	
@@ -111,14 +136,14 @@ public class SlideShowController {
 	
 	
 	/**
-	 * takes the photo creates an enlarged image and sets all of its information in the appropriate spots on the screen
+	 * shows the photo, straight away if it was decoded ahead of time, otherwise once it is decoded, and sets all of its information in the appropriate spots on the screen
 	 * @param picture photo to display
 	 * @throws FileNotFoundException could not display photo
 	 */
 	public void setPic(Photo picture) throws FileNotFoundException{
 		File imageFile = picture.getFile();
-		Image img = new Image(new FileInputStream(imageFile));
-		pic.setImage(img);
+		pic.setImage(ThumbnailLoader.placeholder(525));
+		buffer.show(indx, img -> pic.setImage(img));
 		pic.setFitHeight(325);
 		pic.setFitWidth(525);
 		pic.setPreserveRatio(true);
@@ -127,14 +152,13 @@ public class SlideShowController {
         int pos = imageFile.getName().lastIndexOf(".", imageFile.getName().length()-1);
 		String extnd = imageFile.getName().substring(pos, imageFile.getName().length());
 		stage.setTitle(picture.getCaption() + extnd);
-        Calendar cal = picture.getDate();
-        Date day = cal.getTime();
-        String date = new SimpleDateFormat("MM/dd/yyyy").format(day);
-        String time = new SimpleDateFormat("hh:mm:ss a").format(day);
+        LocalDateTime taken = picture.getDateTime();
+        String date = DATE_FORMAT.format(taken);
+        String time = TIME_FORMAT.format(taken);
         picName.setText(picture.getCaption());
         picDate.setText("Date: " + date);
         picTime.setText("Time: " + time);
-        Collections.sort(picture.getTags(), (a, b) -> a.getName().compareTo(b.getName()));
+        // the tags are listed by name
         String out = "| ";
 		for(Tag t: picture.getTags()){ out = out + t + " | "; }
 		if(out.equals("| ")){ out = "None"; }
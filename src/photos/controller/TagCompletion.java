@@ -0,0 +1,139 @@
+package photos.controller;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import javafx.geometry.Side;
+import javafx.scene.control.ContextMenu;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextField;
+import photos.model.User;
+import photos.search.SearchIndex;
+import photos.search.TagDictionary;
+
+/**
+ * Suggests completions under a text field as the user types in it.
+ *
+ * <p>
+ * Tag fields hold comma separated values, so only the text after the last comma is completed, and
+ * picking a suggestion replaces just that part.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class TagCompletion {
+
+	private final TextField field;
+
+	private final Function<String, List<String>> suggestions;
+
+	private final ContextMenu menu = new ContextMenu();
+
+	/**
+	 * Set while a picked suggestion is being written into the field, so it doesn't suggest again.
+	 */
+	private boolean picking;
+
+	private TagCompletion(TextField field, Function<String, List<String>> suggestions) {
+		this.field = field;
+		this.suggestions = suggestions;
+
+		field.textProperty().addListener((observable, oldText, newText) -> update());
+		field.focusedProperty().addListener((observable, wasFocused, focused) -> {
+			if (!focused)
+				menu.hide();
+		});
+	}
+
+	/**
+	 * Suggests completions in a field.
+	 *
+	 * @param field
+	 *            field to complete
+	 * @param suggestions
+	 *            given what has been typed since the last comma, returns the completions to suggest
+	 */
+	public static void attach(TextField field, Function<String, List<String>> suggestions) {
+		new TagCompletion(field, suggestions);
+	}
+
+	/**
+	 * Suggests the tag names used in a user's albums in a field.
+	 *
+	 * @param field
+	 *            field for a tag name
+	 * @param user
+	 *            user whose tags are suggested
+	 */
+	public static void names(TextField field, User user) {
+		TagDictionary dictionary = SearchIndex.getShared().forUser(user).dictionary();
+		attach(field, prefix -> dictionary.completeName(prefix, TagDictionary.SUGGESTIONS));
+	}
+
+	/**
+	 * Suggests the values a tag has in a user's albums in a field.
+	 *
+	 * @param field
+	 *            field for the tag's values
+	 * @param user
+	 *            user whose tags are suggested
+	 * @param name
+	 *            gives the name of the tag when the user types, as the name may be in another field
+	 */
+	public static void values(TextField field, User user, Supplier<String> name) {
+		TagDictionary dictionary = SearchIndex.getShared().forUser(user).dictionary();
+		attach(field, prefix -> dictionary.completeValue(name.get(), prefix, TagDictionary.SUGGESTIONS));
+	}
+
+	private void update() {
+		if (picking || !field.isFocused()) {
+			menu.hide();
+			return;
+		}
+
+		String typed = typed();
+		if (typed.isEmpty()) {
+			menu.hide();
+			return;
+		}
+
+		List<String> found = suggestions.apply(typed);
+		if (found.isEmpty() || (found.size() == 1 && found.get(0).equalsIgnoreCase(typed))) {
+			menu.hide();
+			return;
+		}
+
+		menu.getItems().clear();
+		for (String suggestion : found) {
+			MenuItem item = new MenuItem(suggestion);
+			item.setMnemonicParsing(false);
+			item.setOnAction(event -> pick(suggestion));
+			menu.getItems().add(item);
+		}
+
+		if (!menu.isShowing())
+			menu.show(field, Side.BOTTOM, 0, 0);
+	}
+
+	/**
+	 * Returns what has been typed since the last comma.
+	 */
+	private String typed() {
+		String text = field.getText();
+		return text.substring(text.lastIndexOf(',') + 1).trim();
+	}
+
+	private void pick(String suggestion) {
+		String text = field.getText();
+		int comma = text.lastIndexOf(',');
+
+		picking = true;
+		field.setText(comma == -1 ? suggestion : text.substring(0, comma + 1) + " " + suggestion);
+		field.positionCaret(field.getText().length());
+		picking = false;
+
+		menu.hide();
+	}
+}
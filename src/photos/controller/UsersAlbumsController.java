@@ -31,8 +31,10 @@ import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
 import javafx.util.Callback;
 import photos.model.Album;
-import photos.model.Photo;
+import photos.model.SmartAlbum;
 import photos.model.User;
+import photos.search.SearchIndex;
+import photos.search.UserIndex;
 
 /**
  * Class controller to perform actions and display the information in the albums list screen
@@ -106,12 +108,48 @@ public class UsersAlbumsController {
 	@FXML TableColumn<Album, String> dateColumn;
 
 	
+	/**
+	 * button to delete the selected smart album
+	 */
+	@FXML Button deleteSmartAlbum;
+
+	
+	/**
+	 * table to display the saved searches, with the same information as the albums
+	 */
+	@FXML TableView<SmartAlbum> smartTable;
+
+	
+	/**
+	 * first column, displays smart album name
+	 */
+	@FXML TableColumn<SmartAlbum, String> smartNameColumn;
+
+	
+	/**
+	 * second column, displays number of photos matching the smart album's search
+	 */
+	@FXML TableColumn<SmartAlbum, String> smartNumPhotosColumn;
+
+	
+	/**
+	 * third column, displays the date range of the photos matching the smart album's search
+	 */
+	@FXML TableColumn<SmartAlbum, String> smartDateColumn;
+
+	
 	/**
 	 * list containing all of the users albums, to display
 	 */
 	private ObservableList<Album> albumList;
 
 	
+	/**
+	 * list containing all of the users smart albums, to display
+	 */
+	private ObservableList<SmartAlbum> smartAlbumList;
+
+	
 	/**
 	 * stage being displayed
 	 */
@@ -144,7 +182,7 @@ public class UsersAlbumsController {
 		currUser = user;
 		stage.setTitle(currUser.getUserName() + "'s Albums");
 
-		albumList = FXCollections.observableList(user.getAlbums());
+		albumList = FXCollections.observableArrayList(user.getAlbums());
 
 		table.setItems(albumList);
 		table.getSortOrder().add(nameColumn);
@@ -171,9 +209,39 @@ public class UsersAlbumsController {
 				return new ReadOnlyObjectWrapper<String>(a.getValue().getDateRange());
 			}
 		});
-	
+
+		// the smart albums' photos are kept by the search index, so showing them doesn't search again
+		UserIndex index = SearchIndex.getShared().forUser(user);
+		smartAlbumList = FXCollections.observableArrayList(user.getSmartAlbums());
+
+		smartTable.setItems(smartAlbumList);
+		smartTable.getSortOrder().add(smartNameColumn);
+		smartNameColumn.setSortable(true);
+
+		smartNameColumn.setStyle("-fx-alignment: CENTER;");
+		smartNumPhotosColumn.setStyle("-fx-alignment: CENTER;");
+		smartDateColumn.setStyle("-fx-alignment: CENTER;");
+
+		smartNameColumn.setCellValueFactory(new Callback<CellDataFeatures<SmartAlbum, String>, ObservableValue<String>>() {
+			public ObservableValue<String> call(CellDataFeatures<SmartAlbum, String> a) {
+				return new ReadOnlyObjectWrapper<String>(a.getValue().getName());
+			}
+		});
+
+		smartNumPhotosColumn.setCellValueFactory(new Callback<CellDataFeatures<SmartAlbum, String>, ObservableValue<String>>() {
+			public ObservableValue<String> call(CellDataFeatures<SmartAlbum, String> a) {
+				return new ReadOnlyObjectWrapper<String>("" + index.inSmartAlbum(a.getValue()).size());
+			}
+		});
+
+		smartDateColumn.setCellValueFactory(new Callback<CellDataFeatures<SmartAlbum, String>, ObservableValue<String>>() {
+			public ObservableValue<String> call(CellDataFeatures<SmartAlbum, String> a) {
+				return new ReadOnlyObjectWrapper<String>(index.inSmartAlbum(a.getValue()).getDateRange());
+			}
+		});
 
 		enterAlbum();
+		enterSmartAlbum();
 	}
 
 	
@@ -217,6 +285,7 @@ public class UsersAlbumsController {
 			return;
 		}
 
+		currUser.addAlbum(newAlbum);
 		albumList.add(newAlbum);
 		table.sort();
 	}
@@ -293,7 +362,29 @@ public class UsersAlbumsController {
 			return;
 		}
 
-		albumList.remove(table.getSelectionModel().getSelectedItem());
+		Album album = table.getSelectionModel().getSelectedItem();
+		currUser.removeAlbum(album);
+		albumList.remove(album);
+	}
+
+	
+	/**
+	 * deletes the currently selected smart album, the photos it listed stay in their albums
+	 */
+	public void deleteSmartAlbum() {
+		if (smartTable.getSelectionModel().getSelectedIndex() == -1) {
+			Alert alert = new Alert(AlertType.ERROR);
+			alert.setTitle("Error deleting smart album");
+			alert.setHeaderText("No smart album selected");
+			alert.setContentText("To delete a smart album, select the smart album and click the delete search button");
+
+			alert.showAndWait();
+			return;
+		}
+
+		SmartAlbum smartAlbum = smartTable.getSelectionModel().getSelectedItem();
+		currUser.removeSmartAlbum(smartAlbum);
+		smartAlbumList.remove(smartAlbum);
 	}
 
 	
@@ -312,16 +403,7 @@ public class UsersAlbumsController {
 			return;
 		}
 
-		boolean hasAtLeastOnePhoto = false;
-
-		for (int i = 0; i < currUser.getAlbums().size(); i++) {
-			if (currUser.getAlbums().get(i).getPhotos().size() > 0) {
-				hasAtLeastOnePhoto = true;
-				break;
-			}
-		}
-
-		if (!hasAtLeastOnePhoto) {
+		if (currUser.getCatalog().getAlbumPhotos().isEmpty()) {
 			Alert alert = new Alert(AlertType.ERROR);
 			alert.setTitle("Error searching photos");
 			alert.setHeaderText("No photos to search");
@@ -403,6 +485,43 @@ public class UsersAlbumsController {
     }
 	
 	
+	/**
+	 * makes the smart album table click-able, double clicking a smart album will display its photos in the search results screen
+	 */
+	private void enterSmartAlbum() {
+
+		smartTable.setOnMouseClicked(new EventHandler<MouseEvent>() {
+		    @Override
+		    public void handle(MouseEvent mouseEvent) {
+		        if(mouseEvent.getButton().equals(MouseButton.PRIMARY)){
+		        	//double click, shows the smart album's photos
+		            if(mouseEvent.getClickCount() == 2){
+		            	SmartAlbum smartAlbum = smartTable.getSelectionModel().getSelectedItem();
+		            	
+		            	if(smartAlbum == null)
+		            		return;
+		            	
+		            	FXMLLoader loader = new FXMLLoader();
+		            	AnchorPane root = null;
+		            	FileInputStream inputStream = null;
+						try { inputStream = new FileInputStream(new File("src/photos/view/search_results.fxml")); }
+						catch (FileNotFoundException e) { e.printStackTrace(); }
+						try { root = (AnchorPane) loader.load(inputStream); }
+						catch (IOException e) { e.printStackTrace(); }
+		    			SearchResultsController searchResultsController = loader.getController();
+		    			searchResultsController.start(stage, userList, currUser, smartAlbum);
+		    			Scene resultsScene = new Scene(root, 640, 400);
+		    			stage.setScene(resultsScene);
+		    			stage.sizeToScene();
+		    			stage.show();
+		    			return;		            	
+		           } //ends double click
+		        } //ends which type of click
+		    } //ends handler
+		}); //ends click events
+    }
+	
+	
 	
 	/**
 	 * enters users inbox and displays the stage to show and received photos from another user
@@ -0,0 +1,655 @@
+package photos.data;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import photos.model.Album;
+import photos.model.ModelEvents;
+import photos.model.ModelListener;
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+import photos.model.Tag;
+import photos.model.User;
+
+/**
+ * Saves and loads the users of the program, one file per user.
+ *
+ * <p>
+ * A small directory file holds every username and password, and each user's albums are kept in a shard
+ * file of their own that is only read when the user's albums are first needed, normally when the user logs
+ * in. Changes are appended to a journal as they happen.
+ * </p>
+ *
+ * <p>
+ * A short while after the last change, a checkpoint saves the shards of the users that changed. The shards
+ * are encoded on the thread that owns the model, so they are consistent, and written on a background
+ * thread, each to a temporary file that then replaces the old one, so a crash never leaves a half written
+ * file. Starting a checkpoint also starts a new journal segment, and once the checkpoint is on disk the
+ * segments before it are deleted.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class DataStore implements ModelListener {
+
+	/**
+	 * Name of the file holding every username and password.
+	 */
+	private static final String directoryFilename = "users.dat";
+
+	/**
+	 * Name of the folder holding the users' shard files.
+	 */
+	private static final String shardFolder = "users";
+
+	/**
+	 * Name of the single journal file used before journal segments.
+	 */
+	private static final String legacyJournalFilename = "journal.log";
+
+	/**
+	 * Name of the single data file every user was saved in before shards.
+	 */
+	private static final String legacyFilename = "data.dat";
+
+	/**
+	 * How long, in milliseconds, to wait after a change before checkpointing, so a burst of changes is saved
+	 * once.
+	 */
+	private static final long CHECKPOINT_DELAY = 2000;
+
+	/**
+	 * Folder all the data files are kept in.
+	 */
+	private final File dir;
+
+	/**
+	 * Runs tasks on the thread that owns the model.
+	 */
+	private final Executor modelThread;
+
+	/**
+	 * Thread that waits out {@link #CHECKPOINT_DELAY CHECKPOINT_DELAY} and writes the checkpoints.
+	 */
+	private final ScheduledExecutorService checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "checkpoint-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * The next checkpoint, if one is waiting for changes to settle.
+	 */
+	private ScheduledFuture<?> scheduled;
+
+	/**
+	 * Every user of the program. Users whose shard hasn't been read yet are not loaded.
+	 */
+	private final List<User> users = new ArrayList<User>();
+
+	/**
+	 * Users whose shard is out of date.
+	 */
+	private final Set<User> dirty = Collections.newSetFromMap(new IdentityHashMap<User, Boolean>());
+
+	/**
+	 * Whether the directory file is out of date.
+	 */
+	private boolean directoryDirty;
+
+	/**
+	 * Checkpoint generation each loaded user's shard was written at.
+	 */
+	private final Map<User, Integer> generations = new IdentityHashMap<User, Integer>();
+
+	/**
+	 * Checkpoint generation the directory file was written at.
+	 */
+	private int directoryGeneration;
+
+	/**
+	 * Set when a checkpoint could not be written, so the journal segments are no longer deleted.
+	 */
+	private volatile boolean keepSegments;
+
+	/**
+	 * Journal the changes are appended to.
+	 */
+	private Journal journal;
+
+	/**
+	 * Writes the changes to {@link #journal journal}.
+	 */
+	private ModelJournal modelJournal;
+
+	/**
+	 * Creates a store keeping its files in the given folder.
+	 *
+	 * @param dir
+	 *            folder for the data files
+	 * @param modelThread
+	 *            runs tasks on the thread the model is changed on
+	 */
+	public DataStore(File dir, Executor modelThread) {
+		this.dir = dir;
+		this.modelThread = modelThread;
+	}
+
+	/**
+	 * Reads the users from the directory file and applies the journal segments left by the last session.
+	 *
+	 * <p>
+	 * Only the usernames and passwords are read; the albums of each user are read when first needed, or
+	 * when a segment changes them. Changes a user's shard already holds are skipped. Data saved in the
+	 * single data file of older versions is split into shards first. Once loaded, the store journals every
+	 * change made to the model.
+	 * </p>
+	 *
+	 * @return every user, or an empty list on the first run of the program
+	 * @throws IOException
+	 *             if the data cannot be read
+	 */
+	public List<User> load() throws IOException {
+		if (!dir.exists())
+			dir.mkdirs();
+		shardDir().mkdirs();
+
+		File legacyJournal = new File(dir, legacyJournalFilename);
+		if (legacyJournal.exists())
+			legacyJournal.renameTo(Journal.segment(dir, 0));
+
+		File legacyFile = new File(dir, legacyFilename);
+		boolean migrating = !directoryFile().exists() && legacyFile.exists();
+
+		if (migrating) {
+			users.addAll(readLegacy(legacyFile));
+			dirty.addAll(users);
+			directoryDirty = true;
+		} else {
+			readDirectory();
+		}
+
+		int generation = directoryGeneration;
+		for (int segment : Journal.segments(dir)) {
+			dirty.addAll(ModelJournal.replay(Journal.segment(dir, segment), users,
+					user -> segment >= generationOf(user), segment >= directoryGeneration));
+			directoryDirty = true;
+			generation = Math.max(generation, segment);
+		}
+		generation++;
+
+		if (!dirty.isEmpty() || directoryDirty)
+			write(capture(generation));
+
+		if (migrating)
+			legacyFile.renameTo(new File(dir, legacyFilename + ".old"));
+
+		journal = new Journal(dir, generation);
+		modelJournal = new ModelJournal(journal);
+		ModelEvents.addListener(this);
+
+		return new ArrayList<User>(users);
+	}
+
+	/**
+	 * Saves what no checkpoint has saved yet, waits for the checkpoints being written, then closes the
+	 * journal.
+	 *
+	 * <p>
+	 * Must be called on the thread that owns the model.
+	 * </p>
+	 */
+	public void save() {
+		if (journal == null)
+			return;
+
+		ModelEvents.removeListener(this);
+		if (scheduled != null)
+			scheduled.cancel(false);
+
+		if (!dirty.isEmpty() || directoryDirty) {
+			Checkpoint checkpoint = capture(journal.rotate());
+			checkpointer.execute(() -> write(checkpoint));
+		}
+
+		checkpointer.shutdown();
+		try {
+			checkpointer.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		journal.close();
+		journal = null;
+	}
+
+	/**
+	 * Records a new user.
+	 *
+	 * @param user
+	 *            the new user
+	 */
+	public void userAdded(User user) {
+		users.add(user);
+		directoryDirty = true;
+		markDirty(user);
+		modelJournal.userAdded(user);
+	}
+
+	/**
+	 * Records a deleted user, whose shard is deleted at the next checkpoint.
+	 *
+	 * @param user
+	 *            the deleted user
+	 */
+	public void userRemoved(User user) {
+		users.remove(user);
+		dirty.remove(user);
+		directoryDirty = true;
+		scheduleCheckpoint();
+		modelJournal.userRemoved(user);
+	}
+
+	@Override
+	public void albumAdded(User user, Album album) {
+		markDirty(user);
+		modelJournal.albumAdded(user, album);
+	}
+
+	@Override
+	public void albumRemoved(User user, Album album) {
+		markDirty(user);
+		modelJournal.albumRemoved(user, album);
+	}
+
+	@Override
+	public void albumRenamed(Album album, String oldName) {
+		if (album.getOwner() == null)
+			return;
+
+		markDirty(album.getOwner());
+		modelJournal.albumRenamed(album, oldName);
+	}
+
+	@Override
+	public void smartAlbumAdded(User user, SmartAlbum smartAlbum) {
+		markDirty(user);
+		modelJournal.smartAlbumAdded(user, smartAlbum);
+	}
+
+	@Override
+	public void smartAlbumRemoved(User user, SmartAlbum smartAlbum) {
+		markDirty(user);
+		modelJournal.smartAlbumRemoved(user, smartAlbum);
+	}
+
+	@Override
+	public void photoAdded(Album album, Photo photo) {
+		if (album.getOwner() == null)
+			return;
+
+		markDirty(album.getOwner());
+		modelJournal.photoAdded(album, photo);
+	}
+
+	@Override
+	public void photoRemoved(Album album, Photo photo) {
+		if (album.getOwner() == null)
+			return;
+
+		markDirty(album.getOwner());
+		modelJournal.photoRemoved(album, photo);
+	}
+
+	@Override
+	public void photosReordered(Album album) {
+		if (album.getOwner() == null)
+			return;
+
+		markDirty(album.getOwner());
+		modelJournal.photosReordered(album);
+	}
+
+	@Override
+	public void tagAdded(Photo photo, Tag tag) {
+		for (User owner : ownersOf(photo)) {
+			markDirty(owner);
+			modelJournal.tagAdded(owner, photo, tag);
+		}
+	}
+
+	@Override
+	public void tagRemoved(Photo photo, Tag tag) {
+		for (User owner : ownersOf(photo)) {
+			markDirty(owner);
+			modelJournal.tagRemoved(owner, photo, tag);
+		}
+	}
+
+	@Override
+	public void captionChanged(Photo photo) {
+		for (User owner : ownersOf(photo)) {
+			markDirty(owner);
+			modelJournal.captionChanged(owner, photo);
+		}
+	}
+
+	/**
+	 * Finds the loaded users that have this photo object in one of their albums or their inbox. Users that
+	 * are not loaded cannot hold it, and a photo of the same file added separately by another user is a
+	 * different object that didn't change. Each user's catalog answers at once, without going through its
+	 * albums.
+	 */
+	private List<User> ownersOf(Photo photo) {
+		List<User> owners = new ArrayList<User>();
+
+		for (User user : users) {
+			if (user.isLoaded() && user.getCatalog().holds(photo))
+				owners.add(user);
+		}
+
+		return owners;
+	}
+
+	/**
+	 * Marks a user's shard out of date and schedules a checkpoint.
+	 */
+	private void markDirty(User user) {
+		dirty.add(user);
+		scheduleCheckpoint();
+	}
+
+	/**
+	 * Schedules a checkpoint {@link #CHECKPOINT_DELAY CHECKPOINT_DELAY} after now, replacing the one already
+	 * scheduled, so it only runs once the changes stop for a moment.
+	 */
+	private void scheduleCheckpoint() {
+		if (checkpointer.isShutdown())
+			return;
+
+		if (scheduled != null)
+			scheduled.cancel(false);
+
+		scheduled = checkpointer.schedule(() -> modelThread.execute(this::checkpoint), CHECKPOINT_DELAY,
+				TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Captures the changed shards and hands them to the background thread to write. Runs on the thread that
+	 * owns the model, so nothing changes while the shards are encoded.
+	 */
+	private void checkpoint() {
+		if (journal == null || (dirty.isEmpty() && !directoryDirty))
+			return;
+
+		Checkpoint checkpoint = capture(journal.rotate());
+		checkpointer.execute(() -> write(checkpoint));
+	}
+
+	/**
+	 * Encodes the shard of every changed user, and the directory, at the given generation. Nothing is dirty
+	 * afterwards.
+	 */
+	private Checkpoint capture(int generation) {
+		Checkpoint checkpoint = new Checkpoint(generation);
+
+		try {
+			for (User user : dirty) {
+				ByteArrayOutputStream shard = new ByteArrayOutputStream();
+				ModelCodec.writeShard(user, generation, shard);
+				checkpoint.files.put(shardFile(user), shard.toByteArray());
+				generations.put(user, generation);
+			}
+
+			// the directory is small and always written, so it always holds the latest generation
+			ByteArrayOutputStream directory = new ByteArrayOutputStream();
+			ModelCodec.writeDirectory(users, generation, directory);
+			checkpoint.files.put(directoryFile(), directory.toByteArray());
+		} catch (IOException e) {
+			// writing to memory cannot fail
+			throw new IllegalStateException(e);
+		}
+
+		if (directoryDirty) {
+			checkpoint.shardNames = new HashSet<String>();
+			for (User user : users)
+				checkpoint.shardNames.add(shardFile(user).getName());
+		}
+
+		directoryGeneration = generation;
+		dirty.clear();
+		directoryDirty = false;
+
+		return checkpoint;
+	}
+
+	/**
+	 * Writes the files of a checkpoint, deletes the shards of deleted users, and then the journal segments
+	 * the checkpoint holds.
+	 *
+	 * <p>
+	 * If a file cannot be written, or the journal cannot be forced to disk, the journal segments are kept
+	 * for the rest of the session, so the next start of the program can replay them.
+	 * </p>
+	 */
+	private void write(Checkpoint checkpoint) {
+		try {
+			for (Map.Entry<File, byte[]> file : checkpoint.files.entrySet())
+				writeAtomically(file.getKey(), file.getValue());
+			syncFolder(shardDir());
+			syncFolder(dir);
+
+			if (checkpoint.shardNames != null)
+				deleteOrphanShards(checkpoint.shardNames);
+		} catch (IOException e) {
+			e.printStackTrace();
+			keepSegments = true;
+		}
+
+		if (keepSegments)
+			return;
+
+		try {
+			if (journal != null)
+				journal.sync();
+		} catch (IOException e) {
+			// the changes the journal lost are only in the model; the next checkpoint saves them from there
+			e.printStackTrace();
+			keepSegments = true;
+			return;
+		}
+		Journal.deleteBefore(dir, checkpoint.generation);
+	}
+
+	/**
+	 * Returns the checkpoint generation of a user's shard, reading the shard if it hasn't been.
+	 */
+	private int generationOf(User user) {
+		user.load();
+		Integer generation = generations.get(user);
+
+		return generation == null ? 0 : generation;
+	}
+
+	/**
+	 * Reads the usernames and passwords, giving each user a loader for its shard. Directories written before
+	 * the binary format are still read.
+	 */
+	private void readDirectory() throws IOException {
+		try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(directoryFile()))) {
+			List<User> saved = new ArrayList<User>();
+
+			if (ModelCodec.isDirectory(in)) {
+				directoryGeneration = ModelCodec.readDirectory(in, saved);
+			} else {
+				DataInputStream data = new DataInputStream(in);
+				int count = data.readInt();
+				for (int i = 0; i < count; i++)
+					saved.add(new User(data.readUTF(), data.readUTF()));
+				directoryDirty = true;
+			}
+
+			for (User user : saved) {
+				user.setLoader(this::readShard);
+				users.add(user);
+			}
+		} catch (FileNotFoundException e) {
+			// first run, no users yet
+		}
+	}
+
+	/**
+	 * Reads a user's albums from its shard. Used as the loader of every user read from the directory. Shards
+	 * written with Java serialization, before the binary format, are still read.
+	 *
+	 * @param user
+	 *            user to load
+	 */
+	@SuppressWarnings("unchecked")
+	private void readShard(User user) {
+		File shard = shardFile(user);
+
+		if (!shard.exists())
+			return;
+
+		try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(shard))) {
+			if (ModelCodec.isShard(in)) {
+				generations.put(user, ModelCodec.readShard(user, in));
+			} else {
+				ObjectInputStream objIn = new ObjectInputStream(in);
+				ArrayList<Album> albums = (ArrayList<Album>) objIn.readObject();
+				Album inbox = (Album) objIn.readObject();
+				user.restore(albums, inbox);
+				markDirty(user);
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Deletes the files in the shard folder that don't belong to any of the named shards, including
+	 * temporary files left by a crash.
+	 */
+	private void deleteOrphanShards(Set<String> names) {
+		File[] shards = shardDir().listFiles();
+		if (shards == null)
+			return;
+
+		for (File shard : shards) {
+			if (!names.contains(shard.getName()))
+				shard.delete();
+		}
+	}
+
+	/**
+	 * Writes a file by writing a temporary file next to it, forcing that to disk, and renaming it over the
+	 * file. Anyone reading the file sees either the old or the new contents, even after a crash.
+	 */
+	private static void writeAtomically(File file, byte[] bytes) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (FileOutputStream out = new FileOutputStream(temp)) {
+			out.write(bytes);
+			out.getFD().sync();
+		}
+
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Forces a folder's entries to disk, so the renames made in it survive a crash.
+	 */
+	private static void syncFolder(File folder) {
+		try (FileChannel channel = FileChannel.open(folder.toPath(), StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// not every platform can open a folder; the renames are still atomic
+		}
+	}
+
+	/**
+	 * Reads every user from the single data file of older versions.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<User> readLegacy(File file) throws IOException {
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			List<User> saved = (List<User>) in.readObject();
+			return saved == null ? new ArrayList<User>() : saved;
+		} catch (ClassNotFoundException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private File directoryFile() {
+		return new File(dir, directoryFilename);
+	}
+
+	private File shardDir() {
+		return new File(dir, shardFolder);
+	}
+
+	/**
+	 * Returns the shard file of a user. The username is hex encoded so any username makes a valid file name,
+	 * and names differing only in case don't share a file.
+	 */
+	private File shardFile(User user) {
+		StringBuilder name = new StringBuilder();
+		for (byte b : user.getUserName().getBytes(StandardCharsets.UTF_8))
+			name.append(String.format("%02x", b));
+
+		return new File(shardDir(), name + ".dat");
+	}
+
+	/**
+	 * The encoded files of one checkpoint, waiting to be written.
+	 */
+	private static class Checkpoint {
+
+		/**
+		 * Generation the files were encoded at.
+		 */
+		final int generation;
+
+		/**
+		 * Contents of each file to write, the directory last.
+		 */
+		final Map<File, byte[]> files = new LinkedHashMap<File, byte[]>();
+
+		/**
+		 * Names of the shards of every user, if users were added or deleted, otherwise null.
+		 */
+		Set<String> shardNames;
+
+		Checkpoint(int generation) {
+			this.generation = generation;
+		}
+	}
+}
@@ -0,0 +1,445 @@
+package photos.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of small records, used to save every change to the program's data as it happens.
+ *
+ * <p>
+ * Records are buffered in memory by {@link #append(byte[]) append} and written by a background thread,
+ * which forces the file to disk once for every group of records that arrive together. Each record is
+ * stored with its length and checksum, so a record that was only partly written when the program stopped
+ * is detected and dropped by {@link #replay(File, RecordHandler) replay}.
+ * </p>
+ *
+ * <p>
+ * The log is split into numbered segment files. {@link #rotate() rotate} starts a new segment, so once
+ * everything recorded in the older segments has been saved elsewhere they can simply be deleted.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class Journal {
+
+	/**
+	 * How long, in milliseconds, the writer waits after the first pending record for others to join it.
+	 */
+	private static final long COMMIT_DELAY = 20;
+
+	/**
+	 * Bytes written in front of every record: its length and its checksum.
+	 */
+	private static final int HEADER_SIZE = 8;
+
+	/**
+	 * Start of the name of every segment file, followed by its number.
+	 */
+	private static final String SEGMENT_PREFIX = "journal-";
+
+	/**
+	 * End of the name of every segment file.
+	 */
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Placed in the pending entries to tell the writer to start the next segment.
+	 */
+	private static final byte[] ROTATE = new byte[0];
+
+	/**
+	 * Reads back the records of a journal.
+	 */
+	public interface RecordHandler {
+
+		/**
+		 * Handles one record.
+		 *
+		 * @param in
+		 *            stream holding only the bytes of the record
+		 * @throws IOException
+		 *             if the record cannot be read
+		 */
+		void handle(DataInputStream in) throws IOException;
+	}
+
+	/**
+	 * Folder holding the segment files.
+	 */
+	private final File dir;
+
+	/**
+	 * Open channel to the segment being written. Only used by the writer thread after construction.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Number of the segment new records go to.
+	 */
+	private int generation;
+
+	/**
+	 * Framed records, and segment changes, waiting to be written.
+	 */
+	private List<byte[]> pending = new ArrayList<byte[]>();
+
+	/**
+	 * Number of entries added to {@link #pending pending}.
+	 */
+	private long appended;
+
+	/**
+	 * Number of entries written and forced to disk.
+	 */
+	private long committed;
+
+	/**
+	 * Set once the journal is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Why the writer stopped, if writing or forcing the file failed. Nothing is committed after it.
+	 */
+	private IOException failure;
+
+	/**
+	 * Thread that writes the pending records.
+	 */
+	private final Thread writer;
+
+	/**
+	 * Opens the given segment for appending, creating it if it doesn't exist.
+	 *
+	 * @param dir
+	 *            folder holding the segment files
+	 * @param generation
+	 *            number of the segment to write to
+	 * @throws IOException
+	 *             if the segment cannot be opened
+	 */
+	public Journal(File dir, int generation) throws IOException {
+		this.dir = dir;
+		this.generation = generation;
+		channel = open(segment(dir, generation));
+
+		writer = new Thread(this::writeLoop, "journal-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Adds a record to the end of the journal.
+	 *
+	 * <p>
+	 * Returns straight away; the record is written by the background thread shortly after.
+	 * </p>
+	 *
+	 * @param record
+	 *            bytes of the record
+	 */
+	public synchronized void append(byte[] record) {
+		if (closed)
+			throw new IllegalStateException("journal is closed");
+
+		CRC32 crc = new CRC32();
+		crc.update(record, 0, record.length);
+
+		ByteArrayOutputStream framed = new ByteArrayOutputStream(HEADER_SIZE + record.length);
+		DataOutputStream out = new DataOutputStream(framed);
+		try {
+			out.writeInt(record.length);
+			out.writeInt((int) crc.getValue());
+			out.write(record);
+		} catch (IOException e) {
+			// writing to memory cannot fail
+			throw new IllegalStateException(e);
+		}
+
+		// once the writer has stopped nothing would write it, but sync still has to see it as lost
+		if (failure == null)
+			pending.add(framed.toByteArray());
+		appended++;
+		notifyAll();
+	}
+
+	/**
+	 * Sends the records appended from now on to a new segment.
+	 *
+	 * @return the number of the new segment; every record appended before the call is in a lower numbered
+	 *         segment
+	 */
+	public synchronized int rotate() {
+		if (closed)
+			throw new IllegalStateException("journal is closed");
+
+		generation++;
+		pending.add(ROTATE);
+		appended++;
+		notifyAll();
+
+		return generation;
+	}
+
+	/**
+	 * Waits until every record appended so far is on disk, and every segment change so far is made.
+	 *
+	 * @throws IOException
+	 *             if the journal could not be written, in which case the records since the last one on disk
+	 *             never will be, or if the wait is interrupted
+	 */
+	public synchronized void sync() throws IOException {
+		long target = appended;
+
+		while (committed < target) {
+			if (failure != null)
+				throw new IOException("journal could not be written", failure);
+			if (!writer.isAlive())
+				throw new IOException("journal is closed");
+
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted waiting for the journal", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes any pending records and closes the journal.
+	 */
+	public void close() {
+		synchronized (this) {
+			if (closed)
+				return;
+
+			closed = true;
+			notifyAll();
+		}
+
+		try {
+			writer.join();
+			channel.close();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Body of the writer thread: waits for records, gives others a moment to arrive, then writes and forces
+	 * them as one group. The file is written without holding the journal's lock, so appending never waits
+	 * on the disk. If a group cannot be written the thread stops, and {@link #sync() sync} throws from then
+	 * on.
+	 */
+	private void writeLoop() {
+		int writing = generation;
+
+		while (true) {
+			List<byte[]> batch;
+			long batchEnd;
+			boolean last;
+
+			synchronized (this) {
+				while (pending.isEmpty() && !closed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+
+				if (pending.isEmpty())
+					return;
+
+				last = closed;
+			}
+
+			if (!last) {
+				try {
+					Thread.sleep(COMMIT_DELAY);
+				} catch (InterruptedException e) {
+					// write what there is straight away
+				}
+			}
+
+			synchronized (this) {
+				batch = pending;
+				batchEnd = appended;
+				pending = new ArrayList<byte[]>();
+			}
+
+			try {
+				for (byte[] entry : batch) {
+					if (entry == ROTATE) {
+						channel.force(false);
+						channel.close();
+						writing++;
+						channel = open(segment(dir, writing));
+					} else {
+						ByteBuffer buffer = ByteBuffer.wrap(entry);
+						while (buffer.hasRemaining())
+							channel.write(buffer);
+					}
+				}
+				channel.force(false);
+			} catch (IOException e) {
+				// the batch may be partly written, so nothing after it can be trusted either
+				e.printStackTrace();
+				synchronized (this) {
+					failure = e;
+					notifyAll();
+				}
+				return;
+			}
+
+			synchronized (this) {
+				committed = batchEnd;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Opens a segment file positioned at its end.
+	 */
+	@SuppressWarnings("resource")
+	private static FileChannel open(File file) throws IOException {
+		FileChannel opened = new RandomAccessFile(file, "rw").getChannel();
+		opened.position(opened.size());
+
+		return opened;
+	}
+
+	/**
+	 * Returns the file of a segment.
+	 *
+	 * @param dir
+	 *            folder holding the segment files
+	 * @param generation
+	 *            number of the segment
+	 * @return the segment's file
+	 */
+	public static File segment(File dir, int generation) {
+		return new File(dir, SEGMENT_PREFIX + generation + SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * Lists the numbers of the segments in a folder.
+	 *
+	 * @param dir
+	 *            folder holding the segment files
+	 * @return the segment numbers, lowest first
+	 */
+	public static List<Integer> segments(File dir) {
+		List<Integer> generations = new ArrayList<Integer>();
+		String[] names = dir.list();
+
+		if (names == null)
+			return generations;
+
+		for (String name : names) {
+			if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX))
+				continue;
+
+			try {
+				generations.add(Integer.parseInt(
+						name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+			} catch (NumberFormatException e) {
+				// not a segment
+			}
+		}
+
+		Collections.sort(generations);
+		return generations;
+	}
+
+	/**
+	 * Deletes the segments numbered lower than the given one.
+	 *
+	 * @param dir
+	 *            folder holding the segment files
+	 * @param generation
+	 *            number of the first segment to keep
+	 */
+	public static void deleteBefore(File dir, int generation) {
+		for (int g : segments(dir)) {
+			if (g < generation)
+				segment(dir, g).delete();
+		}
+	}
+
+	/**
+	 * Reads every complete record of a journal file, in the order they were appended.
+	 *
+	 * <p>
+	 * Reading stops at the first record that is cut short or fails its checksum, and the file is truncated
+	 * there so new records are not appended after the damaged one.
+	 * </p>
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param handler
+	 *            called with each record
+	 * @return the number of records read
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static int replay(File file, RecordHandler handler) throws IOException {
+		if (!file.exists())
+			return 0;
+
+		int count = 0;
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			long good = 0;
+			long length = raf.length();
+
+			while (good + HEADER_SIZE <= length) {
+				raf.seek(good);
+				int size = raf.readInt();
+				int checksum = raf.readInt();
+
+				if (size < 0 || good + HEADER_SIZE + size > length)
+					break;
+
+				byte[] record = new byte[size];
+				raf.readFully(record);
+
+				CRC32 crc = new CRC32();
+				crc.update(record, 0, size);
+				if ((int) crc.getValue() != checksum)
+					break;
+
+				try {
+					handler.handle(new DataInputStream(new ByteArrayInputStream(record)));
+				} catch (EOFException e) {
+					break;
+				}
+
+				good += HEADER_SIZE + size;
+				count++;
+			}
+
+			if (good < length)
+				raf.setLength(good);
+		}
+
+		return count;
+	}
+}
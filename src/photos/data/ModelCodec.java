@@ -0,0 +1,413 @@
+package photos.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+import photos.model.Tag;
+import photos.model.User;
+
+/**
+ * Reads and writes the model in a compact binary format, instead of default Java serialization.
+ *
+ * <p>
+ * Every file starts with a four byte magic number and a format version. Lengths and counts are written as
+ * variable length integers, dates as milliseconds since the epoch, and tag names and values are written
+ * once into a string dictionary that the tags refer to by number. A photo that is in more than one album
+ * of a user is written once and referred to by number from each album. A smart album is written as its
+ * name and query; its photos are found again by searching.
+ * </p>
+ *
+ * <p>
+ * Each file also records the checkpoint generation it was written at: the journal segments numbered below
+ * it are already included in the file.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class ModelCodec {
+
+	/**
+	 * Magic number at the start of a user's shard file: "PHSH".
+	 */
+	private static final int SHARD_MAGIC = 0x50485348;
+
+	/**
+	 * Magic number at the start of the directory file: "PHDR".
+	 */
+	private static final int DIRECTORY_MAGIC = 0x50484452;
+
+	/**
+	 * Version of the format written.
+	 */
+	private static final int VERSION = 3;
+
+	/**
+	 * First version of the format with smart albums in the shards.
+	 */
+	private static final int SMART_ALBUMS_VERSION = 3;
+
+	/**
+	 * Oldest version of the format that can still be read. Version 1 had no generation.
+	 */
+	private static final int OLDEST_VERSION = 1;
+
+	private ModelCodec() {
+	}
+
+	/**
+	 * Returns whether the stream starts with the magic number of a shard written by this codec. The stream is
+	 * left where it was.
+	 *
+	 * @param in
+	 *            stream supporting mark and reset
+	 * @return true if the stream holds an encoded shard
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static boolean isShard(InputStream in) throws IOException {
+		return startsWith(in, SHARD_MAGIC);
+	}
+
+	/**
+	 * Returns whether the stream starts with the magic number of a directory written by this codec. The
+	 * stream is left where it was.
+	 *
+	 * @param in
+	 *            stream supporting mark and reset
+	 * @return true if the stream holds an encoded directory
+	 * @throws IOException
+	 *             if the stream cannot be read
+	 */
+	public static boolean isDirectory(InputStream in) throws IOException {
+		return startsWith(in, DIRECTORY_MAGIC);
+	}
+
+	/**
+	 * Writes the usernames and passwords of the given users.
+	 *
+	 * @param users
+	 *            users to write
+	 * @param generation
+	 *            checkpoint generation the directory is written at
+	 * @param out
+	 *            stream to write to
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public static void writeDirectory(List<User> users, int generation, OutputStream out) throws IOException {
+		Writer w = new Writer();
+		w.fixedInt(DIRECTORY_MAGIC);
+		w.varint(VERSION);
+		w.varint(generation);
+		w.varint(users.size());
+
+		for (User user : users) {
+			w.string(user.getUserName());
+			w.string(user.getPassword());
+		}
+
+		w.writeTo(out);
+	}
+
+	/**
+	 * Reads the users written by {@link #writeDirectory(List, int, OutputStream) writeDirectory}. Their
+	 * albums are not part of the directory.
+	 *
+	 * @param in
+	 *            stream to read from
+	 * @param users
+	 *            list the users, without albums, are added to
+	 * @return the checkpoint generation the directory was written at
+	 * @throws IOException
+	 *             if the stream cannot be read or isn't a directory
+	 */
+	public static int readDirectory(InputStream in, List<User> users) throws IOException {
+		Reader r = new Reader(in);
+		int generation = r.expect(DIRECTORY_MAGIC);
+
+		int count = r.varint();
+		for (int i = 0; i < count; i++)
+			users.add(new User(r.string(), r.string()));
+
+		return generation;
+	}
+
+	/**
+	 * Writes the albums and inbox of a user.
+	 *
+	 * @param user
+	 *            user to write
+	 * @param generation
+	 *            checkpoint generation the shard is written at
+	 * @param out
+	 *            stream to write to
+	 * @throws IOException
+	 *             if the stream cannot be written
+	 */
+	public static void writeShard(User user, int generation, OutputStream out) throws IOException {
+		List<Album> albums = new ArrayList<Album>(user.getAlbums());
+		albums.add(user.getInbox());
+
+		// number every distinct photo and every distinct tag string
+		Map<Photo, Integer> photoIds = new IdentityHashMap<Photo, Integer>();
+		List<Photo> photos = new ArrayList<Photo>();
+		Map<String, Integer> stringIds = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+
+		for (Album album : albums) {
+			for (Photo photo : album.getPhotos()) {
+				if (photoIds.containsKey(photo))
+					continue;
+
+				photoIds.put(photo, photos.size());
+				photos.add(photo);
+
+				for (long key : photo.getTagKeys()) {
+					intern(Tag.nameOf(key), stringIds, strings);
+					intern(Tag.valueOf(key), stringIds, strings);
+				}
+			}
+		}
+
+		Writer w = new Writer();
+		w.fixedInt(SHARD_MAGIC);
+		w.varint(VERSION);
+		w.varint(generation);
+
+		w.varint(strings.size());
+		for (String s : strings)
+			w.string(s);
+
+		w.varint(photos.size());
+		for (Photo photo : photos) {
+			w.string(photo.getFile().getPath());
+			w.string(photo.getCaption());
+			w.varlong(photo.getTime());
+			long[] tags = photo.getTagKeys();
+			w.varint(tags.length);
+			for (long key : tags) {
+				w.varint(stringIds.get(Tag.nameOf(key)));
+				w.varint(stringIds.get(Tag.valueOf(key)));
+			}
+		}
+
+		// the inbox is written last, after the albums
+		w.varint(albums.size() - 1);
+		for (Album album : albums) {
+			w.string(album.getName());
+			w.varint(album.getPhotos().size());
+			for (Photo photo : album.getPhotos())
+				w.varint(photoIds.get(photo));
+		}
+
+		w.varint(user.getSmartAlbums().size());
+		for (SmartAlbum smartAlbum : user.getSmartAlbums()) {
+			w.string(smartAlbum.getName());
+			w.string(smartAlbum.getQuery());
+		}
+
+		w.writeTo(out);
+	}
+
+	/**
+	 * Reads the albums and inbox written by {@link #writeShard(User, int, OutputStream) writeShard} and gives
+	 * them to the user.
+	 *
+	 * @param user
+	 *            user the shard belongs to
+	 * @param in
+	 *            stream to read from
+	 * @return the checkpoint generation the shard was written at
+	 * @throws IOException
+	 *             if the stream cannot be read or isn't a shard
+	 */
+	public static int readShard(User user, InputStream in) throws IOException {
+		Reader r = new Reader(in);
+		int generation = r.expect(SHARD_MAGIC);
+
+		String[] strings = new String[r.varint()];
+		for (int i = 0; i < strings.length; i++)
+			strings[i] = r.string();
+
+		Photo[] photos = new Photo[r.varint()];
+		for (int i = 0; i < photos.length; i++) {
+			String path = r.string();
+			String caption = r.string();
+			long date = r.varlong();
+			int tagCount = r.varint();
+			ArrayList<Tag> tags = new ArrayList<Tag>(tagCount);
+			for (int j = 0; j < tagCount; j++)
+				tags.add(new Tag(strings[r.varint()], strings[r.varint()]));
+
+			photos[i] = new Photo(new File(path), caption, date, tags);
+		}
+
+		int albumCount = r.varint();
+		ArrayList<Album> albums = new ArrayList<Album>(albumCount);
+		for (int i = 0; i <= albumCount; i++) {
+			Album album = new Album(r.string());
+			int photoCount = r.varint();
+			for (int j = 0; j < photoCount; j++)
+				album.addPhoto(photos[r.varint()]);
+			albums.add(album);
+		}
+
+		Album inbox = albums.remove(albumCount);
+
+		ArrayList<SmartAlbum> smartAlbums = new ArrayList<SmartAlbum>();
+		if (r.version >= SMART_ALBUMS_VERSION) {
+			int smartCount = r.varint();
+			for (int i = 0; i < smartCount; i++)
+				smartAlbums.add(new SmartAlbum(r.string(), r.string()));
+		}
+
+		user.restore(albums, smartAlbums, inbox);
+
+		return generation;
+	}
+
+	private static void intern(String s, Map<String, Integer> ids, List<String> strings) {
+		if (!ids.containsKey(s)) {
+			ids.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	private static boolean startsWith(InputStream in, int magic) throws IOException {
+		in.mark(4);
+		int read = 0;
+		for (int i = 0; i < 4; i++) {
+			int b = in.read();
+			if (b == -1)
+				break;
+			read = (read << 8) | b;
+		}
+		in.reset();
+
+		return read == magic;
+	}
+
+	/**
+	 * Builds the bytes of a file in memory.
+	 */
+	private static class Writer {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		void fixedInt(int i) {
+			bytes.write(i >>> 24);
+			bytes.write(i >>> 16);
+			bytes.write(i >>> 8);
+			bytes.write(i);
+		}
+
+		void varint(int i) {
+			varlong(i & 0xFFFFFFFFL);
+		}
+
+		/**
+		 * Writes seven bits at a time, lowest first, with the high bit set on every byte but the last.
+		 */
+		void varlong(long l) {
+			while ((l & ~0x7FL) != 0) {
+				bytes.write((int) ((l & 0x7F) | 0x80));
+				l >>>= 7;
+			}
+			bytes.write((int) l);
+		}
+
+		void string(String s) {
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			varint(utf8.length);
+			bytes.write(utf8, 0, utf8.length);
+		}
+
+		void writeTo(OutputStream out) throws IOException {
+			bytes.writeTo(out);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads the values written by {@link Writer Writer}.
+	 */
+	private static class Reader {
+
+		private final InputStream in;
+
+		/**
+		 * Version of the format being read, once {@link #expect(int) expect} has read it.
+		 */
+		int version;
+
+		Reader(InputStream in) {
+			this.in = in;
+		}
+
+		/**
+		 * Reads the magic number and version, returning the generation.
+		 */
+		int expect(int magic) throws IOException {
+			int read = 0;
+			for (int i = 0; i < 4; i++)
+				read = (read << 8) | next();
+
+			if (read != magic)
+				throw new IOException("Not a saved photos file");
+
+			version = varint();
+			if (version < OLDEST_VERSION || version > VERSION)
+				throw new IOException("Unsupported saved photos version " + version);
+
+			return version == OLDEST_VERSION ? 0 : varint();
+		}
+
+		int varint() throws IOException {
+			return (int) varlong();
+		}
+
+		long varlong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = next();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+			throw new IOException("Malformed number in saved photos file");
+		}
+
+		String string() throws IOException {
+			byte[] utf8 = new byte[varint()];
+			int off = 0;
+			while (off < utf8.length) {
+				int n = in.read(utf8, off, utf8.length - off);
+				if (n == -1)
+					throw new EOFException();
+				off += n;
+			}
+			return new String(utf8, StandardCharsets.UTF_8);
+		}
+
+		private int next() throws IOException {
+			int b = in.read();
+			if (b == -1)
+				throw new EOFException();
+			return b;
+		}
+	}
+}
@@ -0,0 +1,686 @@
+package photos.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+import photos.model.Tag;
+import photos.model.User;
+
+/**
+ * Writes the changes made to the model into a {@link Journal Journal}, and applies the saved changes to
+ * the users when the program starts again.
+ *
+ * <p>
+ * Every record names the user it belongs to, so replaying it only needs that user's albums. Albums are
+ * found by name within their user, and photos by the path of their file.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class ModelJournal {
+
+	private static final byte USER_ADDED = 1;
+	private static final byte USER_REMOVED = 2;
+	private static final byte ALBUM_ADDED = 3;
+	private static final byte ALBUM_REMOVED = 4;
+	private static final byte ALBUM_RENAMED = 5;
+	private static final byte PHOTO_ADDED = 6;
+	private static final byte PHOTO_REMOVED = 7;
+	private static final byte PHOTOS_REORDERED = 8;
+
+	// records 9 to 11 changed a photo in every user; they are only read, from journals of the single data file
+	private static final byte LEGACY_TAG_ADDED = 9;
+	private static final byte LEGACY_TAG_REMOVED = 10;
+	private static final byte LEGACY_CAPTION_CHANGED = 11;
+
+	private static final byte TAG_ADDED = 12;
+	private static final byte TAG_REMOVED = 13;
+	private static final byte CAPTION_CHANGED = 14;
+	private static final byte SMART_ALBUM_ADDED = 15;
+	private static final byte SMART_ALBUM_REMOVED = 16;
+
+	/**
+	 * Set on the op of a record whose strings are written as a length and UTF-8 bytes. Records without it,
+	 * from older journals, hold strings written by <code>writeUTF</code>, which can't be longer than 64 KB.
+	 */
+	private static final byte UTF8_STRINGS = 0x40;
+
+	/**
+	 * Journal the records are appended to.
+	 */
+	private final Journal journal;
+
+	/**
+	 * Creates a writer that appends the model changes to the given journal.
+	 *
+	 * @param journal
+	 *            journal to write to
+	 */
+	public ModelJournal(Journal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Records a user being created.
+	 *
+	 * @param user
+	 *            new user
+	 */
+	public void userAdded(User user) {
+		Record r = new Record(USER_ADDED);
+		r.string(user.getUserName());
+		r.string(user.getPassword());
+		r.append();
+	}
+
+	/**
+	 * Records a user being deleted.
+	 *
+	 * @param user
+	 *            deleted user
+	 */
+	public void userRemoved(User user) {
+		Record r = new Record(USER_REMOVED);
+		r.string(user.getUserName());
+		r.append();
+	}
+
+	/**
+	 * Records an album, with its photos, being added to a user.
+	 *
+	 * @param user
+	 *            user the album was added to
+	 * @param album
+	 *            the new album
+	 */
+	public void albumAdded(User user, Album album) {
+		Record r = new Record(ALBUM_ADDED);
+		r.string(user.getUserName());
+		r.string(album.getName());
+		r.integer(album.getPhotos().size());
+		for (Photo photo : album.getPhotos())
+			r.photo(photo);
+		r.append();
+	}
+
+	/**
+	 * Records an album being deleted.
+	 *
+	 * @param user
+	 *            user the album was removed from
+	 * @param album
+	 *            the deleted album
+	 */
+	public void albumRemoved(User user, Album album) {
+		Record r = new Record(ALBUM_REMOVED);
+		r.string(user.getUserName());
+		r.string(album.getName());
+		r.append();
+	}
+
+	/**
+	 * Records an album being renamed.
+	 *
+	 * @param album
+	 *            the renamed album, which must belong to a user
+	 * @param oldName
+	 *            name of the album before the change
+	 */
+	public void albumRenamed(Album album, String oldName) {
+		Record r = new Record(ALBUM_RENAMED);
+		r.string(album.getOwner().getUserName());
+		r.string(oldName);
+		r.string(album.getName());
+		r.append();
+	}
+
+	/**
+	 * Records a smart album being added to a user.
+	 *
+	 * @param user
+	 *            user the smart album was added to
+	 * @param smartAlbum
+	 *            the new smart album
+	 */
+	public void smartAlbumAdded(User user, SmartAlbum smartAlbum) {
+		Record r = new Record(SMART_ALBUM_ADDED);
+		r.string(user.getUserName());
+		r.string(smartAlbum.getName());
+		r.string(smartAlbum.getQuery());
+		r.append();
+	}
+
+	/**
+	 * Records a smart album being deleted.
+	 *
+	 * @param user
+	 *            user the smart album was removed from
+	 * @param smartAlbum
+	 *            the deleted smart album
+	 */
+	public void smartAlbumRemoved(User user, SmartAlbum smartAlbum) {
+		Record r = new Record(SMART_ALBUM_REMOVED);
+		r.string(user.getUserName());
+		r.string(smartAlbum.getName());
+		r.append();
+	}
+
+	/**
+	 * Records a photo being added to an album.
+	 *
+	 * @param album
+	 *            album, belonging to a user, the photo was added to
+	 * @param photo
+	 *            the added photo
+	 */
+	public void photoAdded(Album album, Photo photo) {
+		Record r = new Record(PHOTO_ADDED);
+		r.album(album);
+		r.photo(photo);
+		r.append();
+	}
+
+	/**
+	 * Records a photo being removed from an album.
+	 *
+	 * @param album
+	 *            album, belonging to a user, the photo was removed from
+	 * @param photo
+	 *            the removed photo
+	 */
+	public void photoRemoved(Album album, Photo photo) {
+		Record r = new Record(PHOTO_REMOVED);
+		r.album(album);
+		r.string(photo.getFile().getPath());
+		r.append();
+	}
+
+	/**
+	 * Records the new order of an album's photos.
+	 *
+	 * @param album
+	 *            album, belonging to a user, that was sorted
+	 */
+	public void photosReordered(Album album) {
+		Record r = new Record(PHOTOS_REORDERED);
+		r.album(album);
+		r.integer(album.getPhotos().size());
+		for (Photo photo : album.getPhotos())
+			r.string(photo.getFile().getPath());
+		r.append();
+	}
+
+	/**
+	 * Records a tag being added to a photo of the given user.
+	 *
+	 * @param user
+	 *            user having the photo in one of its albums
+	 * @param photo
+	 *            photo the tag was added to
+	 * @param tag
+	 *            the new tag
+	 */
+	public void tagAdded(User user, Photo photo, Tag tag) {
+		Record r = new Record(TAG_ADDED);
+		r.string(user.getUserName());
+		r.string(photo.getFile().getPath());
+		r.string(tag.getName());
+		r.string(tag.getValue());
+		r.append();
+	}
+
+	/**
+	 * Records a tag being removed from a photo of the given user.
+	 *
+	 * @param user
+	 *            user having the photo in one of its albums
+	 * @param photo
+	 *            photo the tag was removed from
+	 * @param tag
+	 *            the removed tag
+	 */
+	public void tagRemoved(User user, Photo photo, Tag tag) {
+		Record r = new Record(TAG_REMOVED);
+		r.string(user.getUserName());
+		r.string(photo.getFile().getPath());
+		r.string(tag.getName());
+		r.string(tag.getValue());
+		r.append();
+	}
+
+	/**
+	 * Records the new caption of a photo of the given user.
+	 *
+	 * @param user
+	 *            user having the photo in one of its albums
+	 * @param photo
+	 *            the recaptioned photo
+	 */
+	public void captionChanged(User user, Photo photo) {
+		Record r = new Record(CAPTION_CHANGED);
+		r.string(user.getUserName());
+		r.string(photo.getFile().getPath());
+		r.string(photo.getCaption());
+		r.append();
+	}
+
+	/**
+	 * Applies the changes saved in a journal file to the given users.
+	 *
+	 * <p>
+	 * Only the users named in the journal are loaded. Must be called before anything writes to the journal
+	 * through the model, otherwise the replayed changes would be written a second time.
+	 * </p>
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param users
+	 *            users known from the last saved data, changed in place
+	 * @return the users changed by the journal
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	public static Set<User> replay(File file, List<User> users) throws IOException {
+		return replay(file, users, user -> true, true);
+	}
+
+	/**
+	 * Applies the changes saved in a journal file to the users they are not already saved in.
+	 *
+	 * <p>
+	 * Records of a user for which {@code applies} is false are skipped, as are records creating or deleting
+	 * users when {@code directoryApplies} is false. Otherwise the same as {@link #replay(File, List)
+	 * replay(File, List)}.
+	 * </p>
+	 *
+	 * @param file
+	 *            the journal file
+	 * @param users
+	 *            users known from the last saved data, changed in place
+	 * @param applies
+	 *            tells whether the journal's changes to a user still have to be applied
+	 * @param directoryApplies
+	 *            whether users created or deleted in the journal still have to be
+	 * @return the users changed by the journal
+	 * @throws IOException
+	 *             if the journal cannot be read
+	 */
+	public static Set<User> replay(File file, List<User> users, Predicate<User> applies, boolean directoryApplies)
+			throws IOException {
+		Replay replay = new Replay(users, applies, directoryApplies);
+		Journal.replay(file, replay::apply);
+
+		return replay.changed;
+	}
+
+	/**
+	 * State of one replay of a journal.
+	 */
+	private static class Replay {
+
+		/**
+		 * The users the journal is applied to.
+		 */
+		private final List<User> users;
+
+		/**
+		 * Photos of each changed user by the path of their file.
+		 */
+		private final Map<User, Map<String, List<Photo>>> photos = new IdentityHashMap<User, Map<String, List<Photo>>>();
+
+		/**
+		 * The users changed so far.
+		 */
+		private final Set<User> changed = Collections.newSetFromMap(new IdentityHashMap<User, Boolean>());
+
+		/**
+		 * Tells whether the records of a user are applied.
+		 */
+		private final Predicate<User> applies;
+
+		/**
+		 * Whether users are created and deleted.
+		 */
+		private final boolean directoryApplies;
+
+		/**
+		 * Whether the strings of the record being applied are a length and UTF-8 bytes.
+		 */
+		private boolean utf8Strings;
+
+		Replay(List<User> users, Predicate<User> applies, boolean directoryApplies) {
+			this.users = users;
+			this.applies = applies;
+			this.directoryApplies = directoryApplies;
+		}
+
+		/**
+		 * Applies one saved change.
+		 */
+		void apply(DataInputStream in) throws IOException {
+			byte op = in.readByte();
+			utf8Strings = (op & UTF8_STRINGS) != 0;
+			op &= ~UTF8_STRINGS;
+
+			switch (op) {
+			case USER_ADDED: {
+				User user = new User(string(in), string(in));
+				if (directoryApplies && lookUp(user.getUserName()) == null) {
+					users.add(user);
+					changed.add(user);
+				}
+				break;
+			}
+			case USER_REMOVED: {
+				User user = lookUp(string(in));
+				if (directoryApplies && user != null) {
+					users.remove(user);
+					changed.remove(user);
+				}
+				break;
+			}
+			case ALBUM_ADDED: {
+				User user = findUser(string(in));
+				Album album = new Album(string(in));
+				int count = in.readInt();
+				for (int i = 0; i < count; i++)
+					album.addPhoto(readPhoto(in, user));
+				if (user != null)
+					user.addAlbum(album);
+				break;
+			}
+			case ALBUM_REMOVED: {
+				User user = findUser(string(in));
+				String name = string(in);
+				if (user != null)
+					user.removeAlbum(new Album(name));
+				break;
+			}
+			case ALBUM_RENAMED: {
+				User user = findUser(string(in));
+				String oldName = string(in);
+				String newName = string(in);
+				Album album = findAlbum(user, false, oldName);
+				if (album != null)
+					album.rename(newName);
+				break;
+			}
+			case SMART_ALBUM_ADDED: {
+				User user = findUser(string(in));
+				SmartAlbum smartAlbum = new SmartAlbum(string(in), string(in));
+				if (user != null)
+					user.addSmartAlbum(smartAlbum);
+				break;
+			}
+			case SMART_ALBUM_REMOVED: {
+				User user = findUser(string(in));
+				String name = string(in);
+				if (user != null)
+					user.removeSmartAlbum(new SmartAlbum(name, ""));
+				break;
+			}
+			case PHOTO_ADDED: {
+				User user = findUser(string(in));
+				Album album = readAlbum(in, user);
+				Photo photo = readPhoto(in, user);
+				if (album != null)
+					album.addPhoto(photo);
+				break;
+			}
+			case PHOTO_REMOVED: {
+				User user = findUser(string(in));
+				Album album = readAlbum(in, user);
+				String path = string(in);
+				if (album != null)
+					album.removePhoto(findPhoto(album, path));
+				break;
+			}
+			case PHOTOS_REORDERED: {
+				User user = findUser(string(in));
+				Album album = readAlbum(in, user);
+				int count = in.readInt();
+				Map<String, Integer> order = new HashMap<String, Integer>();
+				for (int i = 0; i < count; i++)
+					order.put(string(in), i);
+				if (album != null)
+					album.sortPhotos((a, b) -> Integer.compare(order.getOrDefault(a.getFile().getPath(), count),
+							order.getOrDefault(b.getFile().getPath(), count)));
+				break;
+			}
+			case TAG_ADDED:
+			case TAG_REMOVED:
+			case CAPTION_CHANGED: {
+				User user = findUser(string(in));
+				applyToPhotos(op, in, user == null ? Collections.<User>emptyList() : Collections.singletonList(user));
+				break;
+			}
+			case LEGACY_TAG_ADDED:
+			case LEGACY_TAG_REMOVED:
+			case LEGACY_CAPTION_CHANGED:
+				applyToPhotos(op, in, users);
+				break;
+			default:
+				throw new IOException("Unknown journal record " + op);
+			}
+		}
+
+		/**
+		 * Applies a tag or caption change to the photos with the recorded path in the given users.
+		 */
+		private void applyToPhotos(byte op, DataInputStream in, List<User> owners) throws IOException {
+			String path = string(in);
+			String first = string(in);
+			String second = (op == CAPTION_CHANGED || op == LEGACY_CAPTION_CHANGED) ? null : string(in);
+
+			for (User owner : owners) {
+				for (Photo photo : photosOf(owner).getOrDefault(path, Collections.<Photo>emptyList())) {
+					if (second == null)
+						photo.setCaption(first);
+					else if (op == TAG_ADDED || op == LEGACY_TAG_ADDED)
+						photo.addTag(new Tag(first, second));
+					else
+						photo.removeTag(new Tag(first, second));
+				}
+			}
+		}
+
+		/**
+		 * Reads a photo written by {@link Record#photo(Photo)}, reusing a photo of the user with the same path
+		 * so photos shared between albums stay shared.
+		 */
+		private Photo readPhoto(DataInputStream in, User user) throws IOException {
+			String path = string(in);
+			String caption = string(in);
+			long date = in.readLong();
+			int tagCount = in.readInt();
+			ArrayList<Tag> tags = new ArrayList<Tag>();
+			for (int i = 0; i < tagCount; i++)
+				tags.add(new Tag(string(in), string(in)));
+
+			if (user == null)
+				return new Photo(new File(path), caption, date, tags);
+
+			List<Photo> samePath = photosOf(user).get(path);
+			if (samePath != null && !samePath.isEmpty())
+				return samePath.get(0);
+
+			Photo photo = new Photo(new File(path), caption, date, tags);
+			photosOf(user).computeIfAbsent(path, k -> new ArrayList<Photo>()).add(photo);
+
+			return photo;
+		}
+
+		/**
+		 * Reads the rest of an album reference written by {@link Record#album(Album)}.
+		 */
+		private Album readAlbum(DataInputStream in, User user) throws IOException {
+			boolean inbox = in.readBoolean();
+			String name = string(in);
+
+			return findAlbum(user, inbox, name);
+		}
+
+		/**
+		 * Returns the photos of a user by path, loading the user and marking it changed the first time.
+		 */
+		private Map<String, List<Photo>> photosOf(User user) {
+			Map<String, List<Photo>> byPath = photos.get(user);
+
+			if (byPath == null) {
+				byPath = new HashMap<String, List<Photo>>();
+				List<Album> albums = new ArrayList<Album>(user.getAlbums());
+				albums.add(user.getInbox());
+
+				for (Album album : albums) {
+					for (Photo photo : album.getPhotos()) {
+						List<Photo> samePath = byPath.computeIfAbsent(photo.getFile().getPath(),
+								k -> new ArrayList<Photo>());
+						if (!samePath.contains(photo))
+							samePath.add(photo);
+					}
+				}
+
+				photos.put(user, byPath);
+			}
+
+			return byPath;
+		}
+
+		/**
+		 * Returns the user with the given name if its records are applied, marking it changed.
+		 */
+		private User findUser(String userName) {
+			User user = lookUp(userName);
+
+			if (user == null || !applies.test(user))
+				return null;
+
+			changed.add(user);
+			return user;
+		}
+
+		private User lookUp(String userName) {
+			for (User user : users) {
+				if (user.getUserName().equals(userName))
+					return user;
+			}
+			return null;
+		}
+
+		private Album findAlbum(User user, boolean inbox, String name) {
+			if (user == null)
+				return null;
+
+			if (inbox)
+				return user.getInbox();
+
+			for (Album album : user.getAlbums()) {
+				if (album.getName().equals(name))
+					return album;
+			}
+			return null;
+		}
+
+		/**
+		 * Reads a string of the record being applied.
+		 */
+		private String string(DataInputStream in) throws IOException {
+			if (!utf8Strings)
+				return in.readUTF();
+
+			byte[] utf8 = new byte[in.readInt()];
+			in.readFully(utf8);
+			return new String(utf8, StandardCharsets.UTF_8);
+		}
+
+		private Photo findPhoto(Album album, String path) {
+			for (Photo photo : album.getPhotos()) {
+				if (photo.getFile().getPath().equals(path))
+					return photo;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Builds the bytes of one journal record.
+	 */
+	private class Record {
+
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		private final DataOutputStream out = new DataOutputStream(bytes);
+
+		Record(byte op) {
+			write(() -> out.writeByte(op | UTF8_STRINGS));
+		}
+
+		void string(String s) {
+			// writeUTF can't take strings over 64 KB, which a caption can be
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			write(() -> {
+				out.writeInt(utf8.length);
+				out.write(utf8);
+			});
+		}
+
+		void integer(int i) {
+			write(() -> out.writeInt(i));
+		}
+
+		void album(Album album) {
+			User owner = album.getOwner();
+			string(owner.getUserName());
+			write(() -> out.writeBoolean(album == owner.getInbox()));
+			string(album.getName());
+		}
+
+		void photo(Photo photo) {
+			string(photo.getFile().getPath());
+			string(photo.getCaption());
+			write(() -> out.writeLong(photo.getTime()));
+			long[] tags = photo.getTagKeys();
+			integer(tags.length);
+			for (long key : tags) {
+				string(Tag.nameOf(key));
+				string(Tag.valueOf(key));
+			}
+		}
+
+		void append() {
+			journal.append(bytes.toByteArray());
+		}
+
+		private void write(Write w) {
+			try {
+				w.run();
+			} catch (IOException e) {
+				// writing to memory cannot fail
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * A write to a record's stream.
+	 */
+	private interface Write {
+		void run() throws IOException;
+	}
+}
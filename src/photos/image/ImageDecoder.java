@@ -0,0 +1,291 @@
+package photos.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Decodes photos only as finely as they will be shown.
+ *
+ * <p>
+ * The size of the photo is read from its header first. A JPEG with a thumbnail in its EXIF data large
+ * enough for the size wanted, and of the same shape as the photo, is decoded from that thumbnail and
+ * the photo itself is never decoded. Otherwise the photo is decoded keeping only every n-th pixel of every
+ * n-th row, with n as large as it can be while the result is still twice the size wanted, so a 6000 pixel
+ * wide photo decoded for a 150 pixel thumbnail never holds more than a 300 pixel wide image in memory. The
+ * result is then scaled the rest of the way by {@link ImageScaler ImageScaler}; the factor of two left
+ * over keeps the skipped pixels from showing as jagged edges.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class ImageDecoder {
+
+	/**
+	 * How much the shape of an EXIF thumbnail may differ from the photo's, as a fraction of its aspect
+	 * ratio. Cameras often pad the thumbnail with black bars to 4:3 instead.
+	 */
+	private static final double SHAPE_TOLERANCE = 0.02;
+
+	/**
+	 * Most bytes read looking for the EXIF data before giving up.
+	 */
+	private static final int MAX_HEADER_BYTES = 256 * 1024;
+
+	private ImageDecoder() {
+	}
+
+	/**
+	 * Reads the size of an image from its header, without decoding it.
+	 *
+	 * @param file
+	 *            image file
+	 * @return the width and height, or <code>null</code> if the file is not an image that can be read
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static Dimension size(File file) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+			ImageReader reader = readerFor(in);
+			if (reader == null)
+				return null;
+
+			try {
+				return new Dimension(reader.getWidth(0), reader.getHeight(0));
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Decodes an image to be scaled to the given width.
+	 *
+	 * @param file
+	 *            image file
+	 * @param width
+	 *            width it will be shown at; the height keeps the image's aspect ratio
+	 * @return the image, at least the given width unless the image is smaller, or <code>null</code> if
+	 *         the file is not an image that can be read
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static BufferedImage decodeToWidth(File file, int width) throws IOException {
+		return decode(file, width, 1);
+	}
+
+	/**
+	 * Decodes an image to be scaled to fit or fill the given size.
+	 *
+	 * @param file
+	 *            image file
+	 * @param width
+	 *            width it will be shown at
+	 * @param height
+	 *            height it will be shown at
+	 * @return the image, at least the given width and height unless the image is smaller, or
+	 *         <code>null</code> if the file is not an image that can be read
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static BufferedImage decode(File file, int width, int height) throws IOException {
+		try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+			ImageReader reader = readerFor(in);
+			if (reader == null)
+				return null;
+
+			try {
+				int sourceWidth = reader.getWidth(0);
+				int sourceHeight = reader.getHeight(0);
+
+				if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+					BufferedImage thumbnail = exifThumbnail(file, sourceWidth, sourceHeight, width, height);
+					if (thumbnail != null)
+						return thumbnail;
+				}
+
+				int step = Math.max(1, Math.min(sourceWidth / (2 * width), sourceHeight / (2 * height)));
+
+				ImageReadParam param = reader.getDefaultReadParam();
+				param.setSourceSubsampling(step, step, 0, 0);
+				return reader.read(0, param);
+			} finally {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Returns a reader for the image in the stream, positioned at its start, or <code>null</code> if no
+	 * reader knows the format.
+	 */
+	private static ImageReader readerFor(ImageInputStream in) {
+		if (in == null)
+			return null;
+
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+		if (!readers.hasNext())
+			return null;
+
+		ImageReader reader = readers.next();
+		reader.setInput(in, true, true);
+		return reader;
+	}
+
+	/**
+	 * Decodes the thumbnail in a JPEG's EXIF data, if it has one at least the size wanted and of the same
+	 * shape as the photo.
+	 */
+	private static BufferedImage exifThumbnail(File file, int sourceWidth, int sourceHeight, int width,
+			int height) {
+		byte[] thumbnailBytes;
+		try {
+			thumbnailBytes = exifThumbnailBytes(header(file));
+		} catch (IOException e) {
+			// without the header the photo itself is decoded
+			return null;
+		}
+
+		if (thumbnailBytes == null)
+			return null;
+
+		BufferedImage thumbnail;
+		try {
+			thumbnail = ImageIO.read(new ByteArrayInputStream(thumbnailBytes));
+		} catch (IOException e) {
+			return null;
+		}
+
+		if (thumbnail == null || thumbnail.getWidth() < width || thumbnail.getHeight() < height)
+			return null;
+
+		double shape = (double) sourceWidth / sourceHeight;
+		double thumbnailShape = (double) thumbnail.getWidth() / thumbnail.getHeight();
+		if (Math.abs(thumbnailShape - shape) > shape * SHAPE_TOLERANCE)
+			return null;
+
+		return thumbnail;
+	}
+
+	/**
+	 * Reads the start of a file, where a JPEG keeps its EXIF data.
+	 */
+	private static byte[] header(File file) throws IOException {
+		byte[] header = new byte[(int) Math.min(MAX_HEADER_BYTES, file.length())];
+
+		try (InputStream in = new FileInputStream(file)) {
+			int read = 0;
+			while (read < header.length) {
+				int n = in.read(header, read, header.length - read);
+				if (n == -1)
+					break;
+				read += n;
+			}
+			return read == header.length ? header : Arrays.copyOf(header, read);
+		}
+	}
+
+	/**
+	 * Finds the JPEG thumbnail in the EXIF segment at the start of a JPEG file.
+	 *
+	 * <p>
+	 * The EXIF data is a TIFF file inside the APP1 segment. Its second directory describes the thumbnail,
+	 * with the offset and length of a JPEG stream within the TIFF data.
+	 * </p>
+	 */
+	private static byte[] exifThumbnailBytes(byte[] header) {
+		if (header.length < 4 || unsigned(header, 0, 2, false) != 0xFFD8)
+			return null;
+
+		int at = 2;
+		while (at + 4 <= header.length) {
+			int marker = (int) unsigned(header, at, 2, false);
+			int length = (int) unsigned(header, at + 2, 2, false);
+
+			// the EXIF data comes before the image data
+			if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || length < 2)
+				return null;
+
+			int segment = at + 4;
+			at += 2 + length;
+
+			if (marker != 0xFFE1 || at > header.length || length < 16)
+				continue;
+
+			if (header[segment] == 'E' && header[segment + 1] == 'x' && header[segment + 2] == 'i'
+					&& header[segment + 3] == 'f' && header[segment + 4] == 0 && header[segment + 5] == 0)
+				return thumbnailInTiff(Arrays.copyOfRange(header, segment + 6, at));
+		}
+
+		return null;
+	}
+
+	/**
+	 * Reads the thumbnail's offset and length from the second directory of TIFF data, and returns its
+	 * bytes.
+	 */
+	private static byte[] thumbnailInTiff(byte[] data) {
+		try {
+			boolean little = data[0] == 'I';
+			if (!little && data[0] != 'M')
+				return null;
+
+			int first = (int) unsigned(data, 4, 4, little);
+			int entries = (int) unsigned(data, first, 2, little);
+			int second = (int) unsigned(data, first + 2 + entries * 12, 4, little);
+			if (second == 0)
+				return null;
+
+			int directory = second;
+			entries = (int) unsigned(data, directory, 2, little);
+
+			long offset = -1, length = -1;
+			for (int i = 0; i < entries; i++) {
+				int entry = directory + 2 + i * 12;
+				int tag = (int) unsigned(data, entry, 2, little);
+				int type = (int) unsigned(data, entry + 2, 2, little);
+				long value = type == 3 ? unsigned(data, entry + 8, 2, little) : unsigned(data, entry + 8, 4, little);
+
+				if (tag == 0x0201)
+					offset = value;
+				else if (tag == 0x0202)
+					length = value;
+			}
+
+			if (offset < 0 || length <= 0 || offset + length > data.length)
+				return null;
+
+			return Arrays.copyOfRange(data, (int) offset, (int) (offset + length));
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// offsets pointing outside the segment
+			return null;
+		}
+	}
+
+	/**
+	 * Reads an unsigned number of the given number of bytes.
+	 */
+	private static long unsigned(byte[] data, int at, int bytes, boolean little) {
+		if (at < 0 || at + bytes > data.length)
+			throw new ArrayIndexOutOfBoundsException(at);
+
+		long value = 0;
+		for (int i = 0; i < bytes; i++) {
+			int b = data[at + (little ? bytes - 1 - i : i)] & 0xFF;
+			value = value << 8 | b;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,97 @@
+package photos.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Scales images down for thumbnails.
+ *
+ * <p>
+ * Images are scaled by the {@link Resampler Resampler}, with the {@link ResampleFilter#MITCHELL MITCHELL}
+ * filter unless another is asked for. Every source pixel counts towards the result, as with a smooth
+ * {@link java.awt.Image#getScaledInstance(int, int, int) getScaledInstance}, but the work is split across
+ * every core and takes a fraction of the time.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class ImageScaler {
+
+	/**
+	 * The filter used when none is given.
+	 */
+	public static final ResampleFilter DEFAULT_FILTER = ResampleFilter.MITCHELL;
+
+	private ImageScaler() {
+	}
+
+	/**
+	 * Scales an image to the given width, keeping its aspect ratio.
+	 *
+	 * @param image
+	 *            image to scale
+	 * @param width
+	 *            width of the result
+	 * @return the scaled image, in RGB without transparency
+	 */
+	public static BufferedImage scaleToWidth(BufferedImage image, int width) {
+		int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+
+		return scale(image, width, height);
+	}
+
+	/**
+	 * Scales an image to fit inside the given size, keeping its aspect ratio.
+	 *
+	 * @param image
+	 *            image to scale
+	 * @param width
+	 *            most width of the result
+	 * @param height
+	 *            most height of the result
+	 * @return the scaled image, as large as fits, in RGB without transparency
+	 */
+	public static BufferedImage scaleToFit(BufferedImage image, int width, int height) {
+		double scale = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+
+		return scale(image, Math.max(1, (int) Math.round(image.getWidth() * scale)),
+				Math.max(1, (int) Math.round(image.getHeight() * scale)));
+	}
+
+	/**
+	 * Scales an image to the given size.
+	 *
+	 * @param image
+	 *            image to scale
+	 * @param width
+	 *            width of the result
+	 * @param height
+	 *            height of the result
+	 * @return the scaled image, in RGB without transparency
+	 */
+	public static BufferedImage scale(BufferedImage image, int width, int height) {
+		return scale(image, width, height, DEFAULT_FILTER);
+	}
+
+	/**
+	 * Scales an image to the given size with the given filter. An image already that size is only copied
+	 * into RGB, whatever the filter.
+	 *
+	 * @param image
+	 *            image to scale
+	 * @param width
+	 *            width of the result
+	 * @param height
+	 *            height of the result
+	 * @param filter
+	 *            filter to scale with
+	 * @return the scaled image, in RGB without transparency
+	 */
+	public static BufferedImage scale(BufferedImage image, int width, int height, ResampleFilter filter) {
+		// at the same size only the box filter leaves every pixel as it was
+		if (width == image.getWidth() && height == image.getHeight())
+			filter = ResampleFilter.BOX;
+
+		return Resampler.resample(image, width, height, filter);
+	}
+}
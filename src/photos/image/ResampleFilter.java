@@ -0,0 +1,87 @@
+package photos.image;
+
+/**
+ * The filters {@link Resampler Resampler} can scale with.
+ *
+ * <p>
+ * Each filter weighs the source pixels around the point an output pixel comes from by their distance to
+ * it, in source pixels when enlarging and in output pixels when shrinking, so every output pixel of a
+ * reduced image is made from all of the source pixels it covers.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public enum ResampleFilter {
+
+	/**
+	 * Averages the pixels an output pixel covers. The fastest, and the softest.
+	 */
+	BOX(0.5) {
+		@Override
+		double weight(double x) {
+			return x >= -0.5 && x < 0.5 ? 1 : 0;
+		}
+	},
+
+	/**
+	 * Mitchell-Netravali cubic with B = C = 1/3. Sharp without visible halos around edges.
+	 */
+	MITCHELL(2) {
+		@Override
+		double weight(double x) {
+			final double b = 1.0 / 3, c = 1.0 / 3;
+
+			x = Math.abs(x);
+			if (x < 1)
+				return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+			if (x < 2)
+				return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x
+						+ (8 * b + 24 * c)) / 6;
+			return 0;
+		}
+	},
+
+	/**
+	 * Lanczos windowed sinc over three lobes. The sharpest, with faint halos around hard edges.
+	 */
+	LANCZOS3(3) {
+		@Override
+		double weight(double x) {
+			if (x == 0)
+				return 1;
+			if (x <= -3 || x >= 3)
+				return 0;
+
+			double px = Math.PI * x;
+			return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+		}
+	};
+
+	/**
+	 * Distance from the center past which the filter's weight is 0.
+	 */
+	private final double support;
+
+	private ResampleFilter(double support) {
+		this.support = support;
+	}
+
+	/**
+	 * Gets the distance from the center past which the filter's weight is 0.
+	 *
+	 * @return the filter's radius, in pixels
+	 */
+	double getSupport() {
+		return support;
+	}
+
+	/**
+	 * Gets the weight of a pixel at a distance from the center.
+	 *
+	 * @param x
+	 *            distance, in pixels
+	 * @return the weight, not normalized
+	 */
+	abstract double weight(double x);
+}
@@ -0,0 +1,410 @@
+package photos.image;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Scales images with a {@link ResampleFilter ResampleFilter}, using every core.
+ *
+ * <p>
+ * The image is scaled across first, each source row into a row of the new width, and then down, each
+ * output row from the rows around it. Which source pixels make each output pixel, and how much each
+ * counts, is worked out once per column and once per row before either pass. Both passes are split into
+ * bands of rows run on the common fork-join pool; images too small to be worth splitting are scaled on
+ * the calling thread. Between the passes the image is kept as floats, so it is only rounded once.
+ * </p>
+ *
+ * <p>
+ * Transparent pixels are blended onto white as they are read, and the result is RGB without
+ * transparency. The rows and sums each thread works with, and the image between the passes, are kept by
+ * the thread and used again by the next image it scales, unless they are large.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class Resampler {
+
+	/**
+	 * Fewest weighted samples worth giving to a task of their own.
+	 */
+	private static final int MIN_TASK_SAMPLES = 128 * 1024;
+
+	/**
+	 * Largest buffer, in elements, a thread keeps between images. Larger ones are left to the garbage
+	 * collector when the image is done.
+	 */
+	private static final int MAX_KEPT = 1024 * 1024;
+
+	/**
+	 * The buffers of each thread.
+	 */
+	private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+	private Resampler() {
+	}
+
+	/**
+	 * Scales an image to the given size.
+	 *
+	 * @param image
+	 *            image to scale
+	 * @param width
+	 *            width of the result
+	 * @param height
+	 *            height of the result
+	 * @param filter
+	 *            filter to scale with
+	 * @return the scaled image, in RGB without transparency
+	 */
+	public static BufferedImage resample(BufferedImage image, int width, int height, ResampleFilter filter) {
+		int sourceWidth = image.getWidth();
+		int sourceHeight = image.getHeight();
+
+		Weights across = new Weights(sourceWidth, width, filter);
+		Weights down = new Weights(sourceHeight, height, filter);
+
+		// a pool thread could pick up another image while it waits, so only other threads keep this one
+		int length = sourceHeight * width * 3;
+		boolean pooled = Thread.currentThread() instanceof ForkJoinWorkerThread;
+		float[] between = pooled ? new float[length] : scratch.get().between(length);
+
+		run(sourceHeight, width * across.taps, (from, to) -> {
+			Scratch buffers = scratch.get();
+			int[] row = buffers.row(sourceWidth);
+			for (int y = from; y < to; y++) {
+				readRow(image, y, sourceWidth, row, buffers);
+				across.apply(row, between, y * width * 3);
+			}
+		});
+
+		BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) scaled.getRaster().getDataBuffer()).getData();
+
+		run(height, width * 3 * down.taps, (from, to) -> {
+			float[] sums = scratch.get().sums(width * 3);
+			for (int y = from; y < to; y++)
+				down.apply(y, between, width * 3, sums, pixels, y * width);
+		});
+
+		scratch.get().release();
+		return scaled;
+	}
+
+	/**
+	 * Runs a pass over rows, split into bands on the fork-join pool if there is enough work.
+	 *
+	 * @param rows
+	 *            number of rows
+	 * @param samplesPerRow
+	 *            weighted samples each row takes
+	 * @param pass
+	 *            the work for a band of rows
+	 */
+	private static void run(int rows, int samplesPerRow, Pass pass) {
+		int band = Math.max(1, MIN_TASK_SAMPLES / Math.max(1, samplesPerRow));
+
+		if (band >= rows || ForkJoinPool.getCommonPoolParallelism() < 2)
+			pass.rows(0, rows);
+		else
+			ForkJoinPool.commonPool().invoke(new Bands(pass, 0, rows, band));
+	}
+
+	/**
+	 * Reads a row of an image as RGB, blending transparent pixels onto white.
+	 */
+	private static void readRow(BufferedImage image, int y, int width, int[] row, Scratch buffers) {
+		Raster raster = image.getRaster();
+
+		switch (image.getType()) {
+		case BufferedImage.TYPE_INT_RGB:
+			raster.getDataElements(0, y, width, 1, row);
+			return;
+
+		case BufferedImage.TYPE_3BYTE_BGR: {
+			// the samples come in band order, red first
+			byte[] samples = (byte[]) raster.getDataElements(0, y, width, 1, buffers.samples(width * 3));
+			for (int x = 0, i = 0; x < width; x++, i += 3)
+				row[x] = (samples[i] & 0xFF) << 16 | (samples[i + 1] & 0xFF) << 8 | samples[i + 2] & 0xFF;
+			return;
+		}
+
+		case BufferedImage.TYPE_BYTE_GRAY: {
+			byte[] samples = (byte[]) raster.getDataElements(0, y, width, 1, buffers.samples(width));
+			for (int x = 0; x < width; x++) {
+				int v = samples[x] & 0xFF;
+				row[x] = v << 16 | v << 8 | v;
+			}
+			return;
+		}
+
+		default:
+			image.getRGB(0, y, width, 1, row, 0, width);
+			if (image.getColorModel().hasAlpha())
+				for (int x = 0; x < width; x++)
+					row[x] = onWhite(row[x]);
+		}
+	}
+
+	/**
+	 * Blends an ARGB pixel onto white.
+	 */
+	private static int onWhite(int argb) {
+		int a = argb >>> 24;
+		if (a == 0xFF)
+			return argb & 0xFFFFFF;
+
+		int white = 255 * (255 - a) + 127;
+		int r = ((argb >> 16 & 0xFF) * a + white) / 255;
+		int g = ((argb >> 8 & 0xFF) * a + white) / 255;
+		int b = ((argb & 0xFF) * a + white) / 255;
+		return r << 16 | g << 8 | b;
+	}
+
+	/**
+	 * Rounds a sum to a color sample.
+	 */
+	private static int clamp(float v) {
+		int i = (int) (v + 0.5f);
+		return i < 0 ? 0 : i > 255 ? 255 : i;
+	}
+
+	/**
+	 * The work for a band of rows.
+	 */
+	private interface Pass {
+
+		/**
+		 * Does the work for some rows.
+		 *
+		 * @param from
+		 *            first row
+		 * @param to
+		 *            row after the last
+		 */
+		void rows(int from, int to);
+	}
+
+	/**
+	 * Splits rows in half until the bands are small enough, then runs the pass over each.
+	 */
+	private static class Bands extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Pass pass;
+		private final int from;
+		private final int to;
+		private final int band;
+
+		Bands(Pass pass, int from, int to, int band) {
+			this.pass = pass;
+			this.from = from;
+			this.to = to;
+			this.band = band;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= band) {
+				pass.rows(from, to);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			invokeAll(new Bands(pass, from, middle, band), new Bands(pass, middle, to, band));
+		}
+	}
+
+	/**
+	 * Which source pixels make each output pixel along one side of the image, and how much each counts.
+	 */
+	private static class Weights {
+
+		/**
+		 * Source pixels read for each output pixel; the same for all of them, with weights of 0 where
+		 * fewer are needed.
+		 */
+		final int taps;
+
+		/**
+		 * Source pixel of each tap, by output pixel, kept inside the image by repeating the edge.
+		 */
+		final int[] index;
+
+		/**
+		 * Weight of each tap, by output pixel, adding up to 1 for each output pixel.
+		 */
+		final float[] weight;
+
+		/**
+		 * Works out the weights for scaling a side of the image.
+		 *
+		 * @param source
+		 *            length of the side in the image
+		 * @param size
+		 *            length of the side scaled
+		 * @param filter
+		 *            filter to scale with
+		 */
+		Weights(int source, int size, ResampleFilter filter) {
+			double scale = (double) size / source;
+			// shrinking widens the filter to cover every source pixel
+			double stretch = Math.max(1, 1 / scale);
+			double support = filter.getSupport() * stretch;
+
+			taps = (int) Math.ceil(support * 2) + 1;
+			index = new int[size * taps];
+			weight = new float[size * taps];
+
+			double[] w = new double[taps];
+			for (int i = 0; i < size; i++) {
+				double center = (i + 0.5) / scale - 0.5;
+				int left = (int) Math.ceil(center - support);
+
+				double sum = 0;
+				for (int k = 0; k < taps; k++) {
+					w[k] = filter.weight((left + k - center) / stretch);
+					sum += w[k];
+				}
+
+				if (sum == 0) {
+					// nothing in reach; take the nearest pixel
+					w[Math.min(taps - 1, Math.max(0, (int) Math.round(center) - left))] = 1;
+					sum = 1;
+				}
+
+				for (int k = 0; k < taps; k++) {
+					index[i * taps + k] = Math.min(source - 1, Math.max(0, left + k));
+					weight[i * taps + k] = (float) (w[k] / sum);
+				}
+			}
+		}
+
+		/**
+		 * Scales a row of RGB pixels across into floats.
+		 *
+		 * @param row
+		 *            source row
+		 * @param out
+		 *            image between the passes
+		 * @param at
+		 *            where the row goes in <code>out</code>
+		 */
+		void apply(int[] row, float[] out, int at) {
+			int size = index.length / taps;
+			for (int x = 0, t = 0; x < size; x++) {
+				float r = 0, g = 0, b = 0;
+				for (int k = 0; k < taps; k++, t++) {
+					int p = row[index[t]];
+					float w = weight[t];
+					r += w * (p >> 16 & 0xFF);
+					g += w * (p >> 8 & 0xFF);
+					b += w * (p & 0xFF);
+				}
+				out[at++] = r;
+				out[at++] = g;
+				out[at++] = b;
+			}
+		}
+
+		/**
+		 * Scales the rows around an output row down into it.
+		 *
+		 * @param y
+		 *            output row
+		 * @param in
+		 *            image between the passes
+		 * @param stride
+		 *            floats in each of its rows
+		 * @param sums
+		 *            sums for one row, overwritten
+		 * @param out
+		 *            pixels of the result
+		 * @param at
+		 *            where the row goes in <code>out</code>
+		 */
+		void apply(int y, float[] in, int stride, float[] sums, int[] out, int at) {
+			Arrays.fill(sums, 0, stride, 0f);
+
+			for (int k = 0, t = y * taps; k < taps; k++, t++) {
+				float w = weight[t];
+				if (w == 0)
+					continue;
+
+				int from = index[t] * stride;
+				for (int i = 0; i < stride; i++)
+					sums[i] += w * in[from + i];
+			}
+
+			for (int i = 0; i < stride; i += 3)
+				out[at++] = clamp(sums[i]) << 16 | clamp(sums[i + 1]) << 8 | clamp(sums[i + 2]);
+		}
+	}
+
+	/**
+	 * The buffers one thread scales with.
+	 */
+	private static class Scratch {
+
+		private int[] row = new int[0];
+		private byte[] samples = new byte[0];
+		private float[] sums = new float[0];
+		private float[] between = new float[0];
+
+		/**
+		 * Gets a buffer for a source row, at least the given length.
+		 */
+		int[] row(int length) {
+			if (row.length < length)
+				row = new int[length];
+			return row;
+		}
+
+		/**
+		 * Gets a buffer for the samples of a source row, at least the given length.
+		 */
+		byte[] samples(int length) {
+			if (samples.length < length)
+				samples = new byte[length];
+			return samples;
+		}
+
+		/**
+		 * Gets a buffer for the sums of an output row, at least the given length.
+		 */
+		float[] sums(int length) {
+			if (sums.length < length)
+				sums = new float[length];
+			return sums;
+		}
+
+		/**
+		 * Gets a buffer for the image between the passes, at least the given length.
+		 */
+		float[] between(int length) {
+			if (between.length < length)
+				between = new float[length];
+			return between;
+		}
+
+		/**
+		 * Lets go of the buffers too large to keep.
+		 */
+		void release() {
+			if (row.length > MAX_KEPT)
+				row = new int[0];
+			if (samples.length > MAX_KEPT)
+				samples = new byte[0];
+			if (sums.length > MAX_KEPT)
+				sums = new float[0];
+			if (between.length > MAX_KEPT)
+				between = new float[0];
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package photos.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import photos.model.Photo;
+
+/**
+ * Keeps the photos around the one shown in a slide show decoded, so stepping to the next or previous
+ * photo shows it at once.
+ *
+ * <p>
+ * The photos are decoded in the background at the size they are shown at rather than at full size, from
+ * the smallest {@link ThumbnailCache ThumbnailCache} rendition large enough, and held in
+ * <code>2 * reach + 1</code> slots: the shown photo and <code>reach</code> photos on either side of it.
+ * Moving one photo along frees the slot of the photo that fell out of reach on one side and decodes the
+ * photo that came into reach on the other, wrapping around the ends of the list the same way the slide
+ * show does. A slot holding a photo still in reach is never given to another, however the window wraps.
+ * </p>
+ *
+ * <p>
+ * Meant to be used from the JavaFX application thread.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class SlideShowBuffer {
+
+	/**
+	 * Threads decoding photos for every slide show. Two are enough to keep ahead of someone clicking
+	 * through an album.
+	 */
+	private static final ThreadPoolExecutor pool = newPool(2);
+
+	/**
+	 * The photos of the slide show.
+	 */
+	private final List<Photo> photos;
+
+	/**
+	 * Box the photos are decoded to fit in.
+	 */
+	private final int width, height;
+
+	/**
+	 * Number of photos kept decoded on each side of the shown photo.
+	 */
+	private final int reach;
+
+	/**
+	 * The slots, in no order. Each photo in reach has one, found by its number.
+	 */
+	private final Slot[] slots;
+
+	/**
+	 * Number of the shown photo, or -1 before one is shown.
+	 */
+	private int current = -1;
+
+	/**
+	 * Given the shown photo once it is decoded.
+	 */
+	private Consumer<Image> onShown;
+
+	/**
+	 * Set once the slide show is closed.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * Creates an empty buffer for a slide show.
+	 *
+	 * @param photos
+	 *            photos of the slide show, read again on each move so changes to the list are picked up
+	 * @param width
+	 *            width of the box the photos are shown in
+	 * @param height
+	 *            height of the box the photos are shown in
+	 * @param reach
+	 *            number of photos to keep decoded on each side of the shown one
+	 */
+	public SlideShowBuffer(List<Photo> photos, int width, int height, int reach) {
+		this.photos = photos;
+		this.width = width;
+		this.height = height;
+		this.reach = reach;
+
+		slots = new Slot[2 * reach + 1];
+		for (int i = 0; i < slots.length; i++)
+			slots[i] = new Slot();
+	}
+
+	/**
+	 * Moves the slide show to a photo and starts decoding the photos around it.
+	 *
+	 * @param index
+	 *            number of the photo to show
+	 * @param shown
+	 *            given the decoded photo on the JavaFX application thread, straight away if it was already
+	 *            decoded. Not called if the slide show moves on or is closed first
+	 */
+	public void show(int index, Consumer<Image> shown) {
+		int size = photos.size();
+		if (closed || size == 0)
+			return;
+
+		current = index;
+		onShown = shown;
+
+		// the shown photo first, then outwards from it so the nearest neighbours are ready first; an album
+		// smaller than the window only lists each photo once
+		LinkedHashSet<Integer> window = new LinkedHashSet<Integer>();
+		window.add(index);
+		for (int k = 1; k <= reach; k++) {
+			window.add(Math.floorMod(index + k, size));
+			window.add(Math.floorMod(index - k, size));
+		}
+
+		// free the slots of photos out of reach, or moved since they were decoded
+		for (Slot slot : slots) {
+			if (slot.index != -1 && (!window.contains(slot.index) || slot.index >= size
+					|| slot.photo != photos.get(slot.index)))
+				slot.clear();
+		}
+
+		for (int i : window)
+			fill(i);
+
+		Image image = find(index).image;
+		if (image != null) {
+			onShown = null;
+			shown.accept(image);
+		}
+	}
+
+	/**
+	 * Drops the decoded photos and stops decoding, when the slide show is closed.
+	 */
+	public void close() {
+		closed = true;
+		onShown = null;
+
+		for (Slot slot : slots)
+			slot.clear();
+
+		pool.purge();
+	}
+
+	/**
+	 * Gets the slot holding a photo.
+	 *
+	 * @return the slot, or <code>null</code> if the photo has none
+	 */
+	private Slot find(int index) {
+		for (Slot slot : slots) {
+			if (slot.index == index)
+				return slot;
+		}
+		return null;
+	}
+
+	/**
+	 * Makes sure a photo in reach has a slot, giving it a free one and decoding it if it doesn't.
+	 */
+	private void fill(int index) {
+		if (find(index) != null)
+			return;
+
+		// there are as many slots as photos in reach, and those out of reach were freed
+		Slot slot = find(-1);
+		Photo photo = photos.get(index);
+
+		slot.clear();
+		slot.index = index;
+		slot.photo = photo;
+		slot.load = pool.submit(() -> {
+			if (closed)
+				return;
+
+			Image image = decode(photo);
+			Platform.runLater(() -> {
+				// the slot may have been given to another photo while this one was decoding
+				if (closed || image == null || slot.index != index || slot.photo != photo)
+					return;
+
+				slot.image = image;
+				slot.load = null;
+				if (index == current && onShown != null) {
+					Consumer<Image> shown = onShown;
+					onShown = null;
+					shown.accept(image);
+				}
+			});
+		});
+	}
+
+	/**
+	 * Decodes a photo to fit the slide show's box, from the smallest rendition large enough if the cache
+	 * has or can make one.
+	 */
+	private Image decode(Photo photo) {
+		ThumbnailCache cache = ThumbnailCache.getShared();
+		File rendition = cache == null ? null : cache.getToFit(photo, width, height);
+
+		try (InputStream in = new FileInputStream(rendition != null ? rendition : photo.getFile())) {
+			return new Image(in, width, height, true, true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static ThreadPoolExecutor newPool(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					Thread thread = new Thread(r, "slide-show-loader");
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	/**
+	 * One slot: a photo and its decoded image, or the decode still running.
+	 */
+	private static class Slot {
+
+		int index = -1;
+
+		Photo photo;
+
+		Image image;
+
+		Future<?> load;
+
+		void clear() {
+			if (load != null)
+				load.cancel(false);
+
+			index = -1;
+			photo = null;
+			image = null;
+			load = null;
+		}
+	}
+}
@@ -0,0 +1,566 @@
+package photos.image;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import photos.model.Album;
+import photos.model.ModelListener;
+import photos.model.Photo;
+import photos.model.User;
+
+/**
+ * Keeps smaller copies of the photos on disk, so showing a photo reads one of them instead of decoding the
+ * original.
+ *
+ * <p>
+ * Each photo has a copy, or rendition, at each of the {@link #WIDTHS WIDTHS}. A view asks for the smallest
+ * rendition it can show at its size without enlarging it, and only goes to the original when none is large
+ * enough. The missing renditions up to that one are made in one pass: the photo is decoded once by
+ * {@link ImageDecoder ImageDecoder}, only as finely as that rendition needs, and each smaller rendition is
+ * scaled from the next larger one. The larger renditions are made when a view asks for them, or in the
+ * background when the photo is added to an album. A photo smaller than a rendition's width is kept at its
+ * own size.
+ * </p>
+ *
+ * <p>
+ * A rendition is found by the canonical path of its photo, its width, and the size and last modified time
+ * of the photo's file, so a photo that changes on disk gets new renditions. The cache holds at most
+ * {@link #MAX_BYTES MAX_BYTES}; when it is full the renditions used least recently are deleted. The last
+ * modified time of each rendition file records when it was last used, so the order survives restarts. Uses
+ * are counted in memory and written to the files in the background, so showing a rendition doesn't write
+ * to the disk.
+ * </p>
+ *
+ * <p>
+ * As a {@link ModelListener ModelListener} the cache makes the renditions of a photo in the background as
+ * soon as it is added to one of a user's albums. Renditions are shared by every user with the same file,
+ * so they are only deleted once the photo is in no album of any loaded user; a user whose albums aren't
+ * loaded yet just has them made again when it shows the photo.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class ThumbnailCache implements ModelListener {
+
+	/**
+	 * Most bytes the renditions may take up on disk; a photo's renditions take about 200 KB.
+	 */
+	public static final long MAX_BYTES = 256L * 1024 * 1024;
+
+	/**
+	 * Widths of the renditions kept of each photo, smallest first. The height keeps the photo's aspect
+	 * ratio.
+	 */
+	private static final int[] WIDTHS = { 100, 150, 512, 1024 };
+
+	/**
+	 * Thread making the renditions of photos as they are added, so adding a photo doesn't wait for them.
+	 */
+	private static final ThreadPoolExecutor maker = newPool();
+
+	/**
+	 * End of the name of every rendition file.
+	 */
+	private static final String SUFFIX = ".jpg";
+
+	/**
+	 * The cache used by the program, if one was opened.
+	 */
+	private static ThumbnailCache shared;
+
+	/**
+	 * Folder holding the rendition files.
+	 */
+	private final File dir;
+
+	/**
+	 * Size in bytes of every rendition file, by name, least recently used first.
+	 */
+	private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16, 0.75f, true);
+
+	/**
+	 * Total of the sizes in {@link #entries entries}.
+	 */
+	private long totalBytes;
+
+	/**
+	 * Time of last use of the renditions used since their files were last stamped with it, by name.
+	 */
+	private final HashMap<String, Long> used = new HashMap<String, Long>();
+
+	/**
+	 * Keys of the photos whose renditions are being made. Another thread wanting them waits instead of
+	 * decoding the photo again.
+	 */
+	private final HashSet<String> making = new HashSet<String>();
+
+	/**
+	 * The program's users, checked before a photo's renditions are deleted. Until they are given nothing is
+	 * deleted.
+	 */
+	private List<User> users;
+
+	/**
+	 * Opens the cache kept in the given folder, creating the folder if needed.
+	 *
+	 * @param dir
+	 *            folder for the rendition files
+	 */
+	public ThumbnailCache(File dir) {
+		this.dir = dir;
+		dir.mkdirs();
+
+		File[] files = dir.listFiles();
+		if (files == null)
+			return;
+
+		// last modified is the time of last use, so the oldest go first
+		long[] used = new long[files.length];
+		Integer[] order = new Integer[files.length];
+		for (int i = 0; i < files.length; i++) {
+			used[i] = files[i].lastModified();
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.comparingLong(i -> used[i]));
+
+		for (int i : order) {
+			File file = files[i];
+			if (!file.getName().endsWith(SUFFIX)) {
+				// a temporary file left by a crash
+				file.delete();
+				continue;
+			}
+
+			entries.put(file.getName(), file.length());
+			totalBytes += file.length();
+		}
+
+		evict();
+	}
+
+	/**
+	 * Sets the cache used by the program.
+	 *
+	 * @param cache
+	 *            the program's cache
+	 */
+	public static void setShared(ThumbnailCache cache) {
+		shared = cache;
+	}
+
+	/**
+	 * Gets the cache used by the program.
+	 *
+	 * @return the program's cache, or <code>null</code> if none was opened
+	 */
+	public static ThumbnailCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Makes a thumbnail of a photo, as large as fits in 100x100 keeping its shape.
+	 *
+	 * <p>
+	 * It is scaled from the smallest rendition in the {@link #getShared() shared} cache that is large
+	 * enough, or decoded by {@link ImageDecoder ImageDecoder} without reading the whole photo into memory
+	 * if there is no cache. The program makes this {@link Photo#getThumbnail() Photo.getThumbnail}'s
+	 * {@link photos.model.ThumbnailMaker ThumbnailMaker}.
+	 * </p>
+	 *
+	 * @param photo
+	 *            photo to make a thumbnail of
+	 * @return the thumbnail, or <code>null</code> if the file is not an image
+	 * @throws IOException
+	 *             if the photo's file cannot be read
+	 */
+	public static BufferedImage thumbnail(Photo photo) throws IOException {
+		File rendition = shared == null ? null : shared.getToFit(photo, 100, 100);
+
+		BufferedImage image = rendition != null ? ImageIO.read(rendition)
+				: ImageDecoder.decode(photo.getFile(), 100, 100);
+		return image == null ? null : ImageScaler.scaleToFit(image, 100, 100);
+	}
+
+	/**
+	 * Returns the smallest rendition of a photo at least the given width, making the photo's renditions
+	 * first if the cache doesn't have it.
+	 *
+	 * @param photo
+	 *            photo to get a rendition of
+	 * @param width
+	 *            width it will be shown at; the height keeps the photo's aspect ratio
+	 * @return the rendition file, or <code>null</code> if the photo cannot be read or is shown wider than
+	 *         the largest rendition
+	 */
+	public File get(Photo photo, int width) {
+		for (int i = 0; i < WIDTHS.length; i++) {
+			if (WIDTHS[i] >= width)
+				return rendition(photo, i);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the smallest rendition of a photo that fits the given box without being enlarged, making the
+	 * photo's renditions first if the cache doesn't have them.
+	 *
+	 * @param photo
+	 *            photo to get a rendition of
+	 * @param width
+	 *            width of the box it will be fit in
+	 * @param height
+	 *            height of the box it will be fit in
+	 * @return the rendition file, or <code>null</code> if the photo cannot be read or is shown larger than
+	 *         the largest rendition
+	 */
+	public File getToFit(Photo photo, int width, int height) {
+		// the photo's header tells which rendition fits, so only that one and those below it are made
+		Dimension size;
+		try {
+			size = ImageDecoder.size(photo.getFile());
+		} catch (IOException e) {
+			return null;
+		}
+		if (size == null)
+			return null;
+
+		for (int i = 0; i < WIDTHS.length; i++) {
+			// a rendition of a photo narrower than its width is the whole photo
+			int renditionWidth = Math.min(WIDTHS[i], size.width);
+			int renditionHeight = (int) Math.round((double) size.height * renditionWidth / size.width);
+
+			// a narrower rendition may still reach the top and bottom of the box
+			if (renditionWidth >= width || renditionHeight >= height || renditionWidth == size.width)
+				return rendition(photo, i);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Makes the renditions of a photo the cache doesn't have.
+	 *
+	 * @param photo
+	 *            photo to make the renditions of
+	 */
+	public void make(Photo photo) {
+		// the largest one missing makes the ones below it
+		for (int i = WIDTHS.length - 1; i >= 0; i--) {
+			if (rendition(photo, i) == null)
+				return;
+		}
+	}
+
+	/**
+	 * Returns the file of the rendition of a photo at one of the {@link #WIDTHS WIDTHS}, making it and the
+	 * smaller renditions the cache doesn't have if it doesn't have this one.
+	 */
+	private File rendition(Photo photo, int rendition) {
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(photo.getFile().toPath(), BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+
+		String stamp = Long.toHexString(attributes.size()) + "-"
+				+ Long.toHexString(attributes.lastModifiedTime().toMillis()) + SUFFIX;
+		String key = photo.getKey();
+
+		String[] names = new String[WIDTHS.length];
+		for (int i = 0; i < WIDTHS.length; i++)
+			names[i] = prefix(photo, WIDTHS[i]) + stamp;
+
+		synchronized (this) {
+			if (touch(names[rendition]))
+				return new File(dir, names[rendition]);
+
+			try {
+				while (making.contains(key)) {
+					wait();
+					if (touch(names[rendition]))
+						return new File(dir, names[rendition]);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+
+			making.add(key);
+		}
+
+		try {
+			return make(photo, names, rendition) ? new File(dir, names[rendition]) : null;
+		} finally {
+			synchronized (this) {
+				making.remove(key);
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Makes a rendition of a photo and the smaller ones the cache doesn't have, from one decode of the photo
+	 * only as fine as the rendition asked for needs.
+	 *
+	 * @param photo
+	 *            photo to make the renditions of
+	 * @param names
+	 *            names of its rendition files, by rendition
+	 * @param wanted
+	 *            the rendition asked for
+	 * @return true if the rendition asked for was made; false if the photo cannot be read
+	 */
+	private boolean make(Photo photo, String[] names, int wanted) {
+		boolean[] missing = new boolean[wanted + 1];
+
+		synchronized (this) {
+			for (int i = 0; i <= wanted; i++)
+				missing[i] = entries.get(names[i]) == null;
+		}
+
+		if (!missing[wanted])
+			return true;
+
+		try {
+			BufferedImage image = ImageDecoder.decodeToWidth(photo.getFile(), WIDTHS[wanted]);
+			if (image == null)
+				return false;
+
+			for (int i = wanted; i >= 0; i--) {
+				// each rendition is scaled from the one above it, which is already much smaller than the photo
+				if (image.getWidth() > WIDTHS[i] || i == wanted)
+					image = ImageScaler.scaleToWidth(image, Math.min(WIDTHS[i], image.getWidth()));
+
+				if (missing[i])
+					write(image, names[i]);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+
+		synchronized (this) {
+			// renditions made before the photo's file last changed are no use now
+			for (int i = 0; i < WIDTHS.length; i++)
+				removeEntries(prefix(photo, WIDTHS[i]), names[i]);
+
+			evict();
+			return entries.get(names[wanted]) != null;
+		}
+	}
+
+	/**
+	 * Writes a rendition and counts it in the cache.
+	 */
+	private void write(BufferedImage image, String name) throws IOException {
+		File file = new File(dir, name);
+
+		File temp = Files.createTempFile(dir.toPath(), name, ".tmp").toFile();
+		ImageIO.write(image, "jpg", temp);
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+
+		synchronized (this) {
+			long size = file.length();
+			Long old = entries.put(name, size);
+			totalBytes += size - (old == null ? 0 : old);
+		}
+	}
+
+	/**
+	 * Marks a rendition as used now, if the cache has it.
+	 *
+	 * @return true if the cache has it
+	 */
+	private boolean touch(String name) {
+		if (entries.get(name) == null)
+			return false;
+
+		// the first use since the files were last stamped queues the next stamping
+		if (used.isEmpty())
+			maker.execute(this::writeUseTimes);
+		used.put(name, System.currentTimeMillis());
+		return true;
+	}
+
+	/**
+	 * Writes the times the renditions were last used to their files, so the order they are deleted in
+	 * survives restarts. Done in the background after they are used, and should be done once more before
+	 * the program quits.
+	 */
+	public void writeUseTimes() {
+		HashMap<String, Long> times;
+		synchronized (this) {
+			times = new HashMap<String, Long>(used);
+			used.clear();
+		}
+
+		// a rendition deleted since is just not found
+		for (Map.Entry<String, Long> time : times.entrySet())
+			new File(dir, time.getKey()).setLastModified(time.getValue());
+	}
+
+	/**
+	 * Deletes every rendition of a photo.
+	 *
+	 * @param photo
+	 *            photo whose renditions are deleted
+	 */
+	public synchronized void remove(Photo photo) {
+		removeEntries(hash(photo.getKey()) + "-", null);
+	}
+
+	@Override
+	public void photoAdded(Album album, Photo photo) {
+		// albums being read in have no owner yet; their photos were made renditions of when added
+		if (album.getOwner() != null)
+			maker.execute(() -> make(photo));
+	}
+
+	/**
+	 * Gives the cache the program's users, so it can tell when no user has a photo any more.
+	 *
+	 * @param users
+	 *            every user, read each time a photo leaves an album
+	 */
+	public void setUsers(List<User> users) {
+		this.users = users;
+	}
+
+	@Override
+	public void photoRemoved(Album album, Photo photo) {
+		if (album.getOwner() != null && !held(photo))
+			remove(photo);
+	}
+
+	@Override
+	public void albumRemoved(User user, Album album) {
+		for (Photo photo : album.getPhotos()) {
+			if (!held(photo))
+				remove(photo);
+		}
+	}
+
+	/**
+	 * Deletes the renditions of a deleted user's photos that no other user has. A user whose albums were
+	 * never loaded is left alone rather than read just to find its photos.
+	 *
+	 * @param user
+	 *            the deleted user, already taken out of the program's users
+	 */
+	public void userRemoved(User user) {
+		if (!user.isLoaded())
+			return;
+
+		for (Photo photo : user.getCatalog().getPhotos()) {
+			if (!held(photo))
+				remove(photo);
+		}
+	}
+
+	/**
+	 * Returns whether a loaded user still has a photo in one of its albums or its inbox. Without the users,
+	 * every photo counts as held.
+	 */
+	private boolean held(Photo photo) {
+		if (users == null)
+			return true;
+
+		for (User user : users) {
+			if (user.isLoaded() && user.getCatalog().contains(photo))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Deletes the renditions whose names start with the given prefix, except the one to keep.
+	 */
+	private void removeEntries(String prefix, String keep) {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+
+		while (it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			if (entry.getKey().startsWith(prefix) && !entry.getKey().equals(keep)) {
+				new File(dir, entry.getKey()).delete();
+				totalBytes -= entry.getValue();
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the least recently used renditions until the cache fits in {@link #MAX_BYTES MAX_BYTES}.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+
+		while (totalBytes > MAX_BYTES && it.hasNext()) {
+			Map.Entry<String, Long> entry = it.next();
+			new File(dir, entry.getKey()).delete();
+			totalBytes -= entry.getValue();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Returns the start of the names of a photo's renditions of the given width.
+	 */
+	private static String prefix(Photo photo, int width) {
+		return hash(photo.getKey()) + "-" + width + "-";
+	}
+
+	/**
+	 * Returns the SHA-1 of a string in hex, so any path makes a short, valid file name.
+	 */
+	private static String hash(String s) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(s.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest)
+				hex.append(String.format("%02x", b));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform has SHA-1
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static ThreadPoolExecutor newPool() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					Thread thread = new Thread(r, "rendition-maker");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+}
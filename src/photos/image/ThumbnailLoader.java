@@ -0,0 +1,173 @@
+package photos.image;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javafx.application.Platform;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import photos.model.Photo;
+
+/**
+ * Loads thumbnails in the background for one screen, so the screen can be shown before its photos are
+ * decoded.
+ *
+ * <p>
+ * The thumbnails are read from the shared {@link ThumbnailCache ThumbnailCache}, made from the original
+ * when the cache doesn't have them, by a small pool of threads shared by every screen. Each loaded image
+ * is handed over on the JavaFX application thread, in the order the loads were asked for as far as the
+ * pool allows. When the screen is left {@link #cancel() cancel} drops the loads that haven't finished.
+ * </p>
+ *
+ * <p>
+ * Meant to be used from the JavaFX application thread.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class ThumbnailLoader {
+
+	/**
+	 * Threads decoding thumbnails for every screen. Decoding is mostly disk and CPU, so a few threads are
+	 * enough and more would only slow the rest of the program down.
+	 */
+	private static final ThreadPoolExecutor pool = newPool(
+			Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors())));
+
+	/**
+	 * Number of pending loads at which the finished ones are dropped from the list.
+	 */
+	private static final int PRUNE_SIZE = 128;
+
+	/**
+	 * Placeholder image for each thumbnail width, shown until the thumbnail is loaded.
+	 */
+	private static final Map<Integer, Image> placeholders = new HashMap<Integer, Image>();
+
+	/**
+	 * Loads asked for and not cancelled.
+	 */
+	private final List<Future<?>> pending = new ArrayList<Future<?>>();
+
+	/**
+	 * Counts the calls to {@link #cancel() cancel}. A load only hands its image over if no cancel happened
+	 * since it was asked for.
+	 */
+	private final AtomicInteger generation = new AtomicInteger();
+
+	/**
+	 * Loads the thumbnail of a photo in the background.
+	 *
+	 * @param photo
+	 *            photo to load the thumbnail of
+	 * @param width
+	 *            width of the thumbnail
+	 * @param done
+	 *            given the thumbnail on the JavaFX application thread, unless the load is cancelled first
+	 * @return the load, which can be cancelled on its own when its thumbnail is no longer wanted
+	 */
+	public Future<?> load(Photo photo, int width, Consumer<Image> done) {
+		int asked = generation.get();
+
+		// loads cancelled on their own or finished don't need cancelling again
+		if (pending.size() >= PRUNE_SIZE)
+			pending.removeIf(Future::isDone);
+
+		Future<?> load = pool.submit(() -> {
+			if (generation.get() != asked)
+				return;
+
+			Image image = decode(photo, width);
+			Platform.runLater(() -> {
+				if (generation.get() == asked && image != null)
+					done.accept(image);
+			});
+		});
+		pending.add(load);
+
+		return load;
+	}
+
+	/**
+	 * Cancels every load that hasn't finished. Loads already decoding finish, so the thumbnail is still
+	 * cached, but their images are not handed over.
+	 */
+	public void cancel() {
+		generation.incrementAndGet();
+
+		for (Future<?> load : pending)
+			load.cancel(false);
+		pending.clear();
+
+		pool.purge();
+	}
+
+	/**
+	 * Returns a plain image to show in place of a thumbnail that is still loading.
+	 *
+	 * @param width
+	 *            width of the thumbnail
+	 * @return the placeholder image
+	 */
+	public static Image placeholder(int width) {
+		Image placeholder = placeholders.get(width);
+
+		if (placeholder == null) {
+			int height = width * 3 / 4;
+			WritableImage image = new WritableImage(width, height);
+			PixelWriter writer = image.getPixelWriter();
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++)
+					writer.setColor(x, y, Color.gray(0.9));
+			}
+
+			placeholder = image;
+			placeholders.put(width, placeholder);
+		}
+
+		return placeholder;
+	}
+
+	/**
+	 * Reads a thumbnail from the smallest rendition in the cache at least its width, or decodes the
+	 * original at the thumbnail's width if the cache cannot make one.
+	 */
+	private static Image decode(Photo photo, int width) {
+		ThumbnailCache cache = ThumbnailCache.getShared();
+		File thumbnail = cache == null ? null : cache.get(photo, width);
+
+		try (InputStream in = new FileInputStream(thumbnail != null ? thumbnail : photo.getFile())) {
+			return new Image(in, width, 0, true, true);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	private static ThreadPoolExecutor newPool(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					Thread thread = new Thread(r, "thumbnail-loader");
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+}
@@ -1,8 +1,12 @@
 package photos.model;
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 
 /**
  * A class that represents an album in the Photos application.
@@ -17,6 +21,11 @@ public class Album implements Serializable{
 	 */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Format of the dates in the {@link #getDateRange() date range}.
+	 */
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
 	/**
 	 * The name of the album.
 	 */
@@ -27,6 +36,42 @@ public class Album implements Serializable{
 	 */
 	private ArrayList<Photo> photos;
 
+	/**
+	 * The same photos as {@link #photos photos}, hashed, so checking whether a photo
+	 * is in the album doesn't go through the whole list. Built when first needed.
+	 */
+	private transient HashSet<Photo> members;
+
+	/**
+	 * The user the album belongs to. Set by the {@link User User} when the album is added to it.
+	 */
+	private transient User owner;
+
+	/**
+	 * Time of the oldest photo, in milliseconds, while {@link #summarized
+	 * summarized}.
+	 */
+	private transient long oldest;
+
+	/**
+	 * Time of the newest photo, in milliseconds, while {@link #summarized
+	 * summarized}.
+	 */
+	private transient long newest;
+
+	/**
+	 * Whether {@link #oldest oldest} and {@link #newest newest} are known. They are
+	 * kept as photos are added, and found again when needed after the oldest or
+	 * newest photo is removed.
+	 */
+	private transient boolean summarized;
+
+	/**
+	 * The {@link #getDateRange() date range} as last written, or <code>null</code>
+	 * if the photos changed since.
+	 */
+	private transient String dateRange;
+
 	/**
 	 * Creates a new <code>Album</code> instance with the given name.
 	 * 
@@ -48,41 +93,70 @@ public class Album implements Serializable{
 	 * date in the format <code>MM/DD/YYYY</code>.
 	 * </p>
 	 * 
+	 * <p>
+	 * The range is only worked out again after the album's photos change, so
+	 * showing it for every album in a table costs nothing.
+	 * </p>
+	 * 
 	 * @return date range of the photos in the album
 	 */
 	public String getDateRange() {
-		String output;
-		Photo newest, oldest;
-		SimpleDateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+		if (dateRange != null)
+			return dateRange;
 
 		if (photos.size() == 0)
-			return "";
-
-		if (photos.size() == 1) {
-			newest = photos.get(0);
-			output = dateFormat.format(newest.getDate().getTime());
-			return output;
+			dateRange = "";
+		else if (photos.size() == 1)
+			dateRange = DATE_FORMAT.format(photos.get(0).getDateTime());
+		else {
+			summarize();
+			dateRange = DATE_FORMAT.format(Instant.ofEpochMilli(oldest).atZone(Photo.getZone())) + " - "
+					+ DATE_FORMAT.format(Instant.ofEpochMilli(newest).atZone(Photo.getZone()));
 		}
 
-		// find oldest photo
-		oldest = photos.get(0);
+		return dateRange;
+	}
 
-		for (int i = 0; i < photos.size(); i++) {
-			if (oldest.getDate().compareTo(photos.get(i).getDate()) > 0)
-				oldest = photos.get(i);
+	/**
+	 * Works out the dates of the oldest and newest photos, if they aren't known.
+	 */
+	private void summarize() {
+		if (summarized)
+			return;
+
+		oldest = Long.MAX_VALUE;
+		newest = Long.MIN_VALUE;
+		for (Photo photo : photos) {
+			long time = photo.getTime();
+			oldest = Math.min(oldest, time);
+			newest = Math.max(newest, time);
 		}
+		summarized = true;
+	}
 
-		// find newest photo
-		newest = photos.get(0);
+	/**
+	 * Brings the summary up to date with a photo that was added.
+	 */
+	private void summaryAdd(Photo photo) {
+		dateRange = null;
 
-		for (int i = 0; i < photos.size(); i++) {
-			if (newest.getDate().compareTo(photos.get(i).getDate()) < 0)
-				newest = photos.get(i);
+		if (summarized) {
+			long time = photo.getTime();
+			oldest = Math.min(oldest, time);
+			newest = Math.max(newest, time);
 		}
+	}
 
-		output = dateFormat.format(oldest.getDate().getTime()) + " - " + dateFormat.format(newest.getDate().getTime());
+	/**
+	 * Brings the summary up to date with a photo that was removed. If it was the
+	 * oldest or newest photo, the next one has to be found again.
+	 */
+	private void summaryRemove(Photo photo) {
+		dateRange = null;
 
-		return output;
+		long time = photo.getTime();
+		if (time == oldest || time == newest)
+			summarized = false;
 	}
 
 	/**
@@ -92,7 +166,10 @@ public class Album implements Serializable{
 	 *            new name for the album
 	 */
 	public void rename(String newName) {
+		String oldName = name;
 		name = newName;
+
+		ModelEvents.albumRenamed(this, oldName);
 	}
 
 	/**
@@ -108,10 +185,14 @@ public class Album implements Serializable{
 	 * @return true if photo is added; false otherwise.
 	 */
 	public boolean addPhoto(Photo photo) {
-		if (photos.contains(photo))
+		if (!members().add(photo))
 			return false;
 
 		photos.add(photo);
+		summaryAdd(photo);
+		if (owner != null)
+			owner.photoAdded(this, photo);
+		ModelEvents.photoAdded(this, photo);
 
 		return true;
 	}
@@ -129,7 +210,50 @@ public class Album implements Serializable{
 	 * @return true if album is removed; false otherwise.
 	 */
 	public boolean removePhoto(Photo photo) {
-		return photos.remove(photo);
+		if (!members().remove(photo))
+			return false;
+
+		Photo removed = photos.remove(photos.indexOf(photo));
+		summaryRemove(removed);
+		if (owner != null)
+			owner.photoRemoved(this, removed);
+		ModelEvents.photoRemoved(this, removed);
+
+		return true;
+	}
+
+	/**
+	 * Returns whether the given photo is in the album.
+	 * 
+	 * @param photo
+	 *            photo to look for
+	 * @return true if the album has a photo equal to the given one; false
+	 *         otherwise.
+	 */
+	public boolean contains(Photo photo) {
+		return members().contains(photo);
+	}
+
+	/**
+	 * Returns {@link #members members}, building it from the photos if it hasn't
+	 * been, as after the album is deserialized.
+	 */
+	private HashSet<Photo> members() {
+		if (members == null)
+			members = new HashSet<Photo>(photos);
+
+		return members;
+	}
+
+	/**
+	 * Puts the album's photos in the order given by the comparator.
+	 * 
+	 * @param order
+	 *            comparator deciding the new order of the photos
+	 */
+	public void sortPhotos(Comparator<Photo> order) {
+		Collections.sort(photos, order);
+		ModelEvents.photosReordered(this);
 	}
 
 	/**
@@ -166,9 +290,34 @@ public class Album implements Serializable{
 		return name;
 	}
 
+	/**
+	 * Gets the user the album belongs to.
+	 * 
+	 * @return album's owner, or <code>null</code> if it hasn't been added to a user
+	 *         or was removed from it
+	 */
+	public User getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Sets the user the album belongs to.
+	 * 
+	 * @param owner
+	 *            album's owner
+	 */
+	void setOwner(User owner) {
+		this.owner = owner;
+	}
+
 	/**
 	 * Gets album's photos.
 	 * 
+	 * <p>
+	 * The list must not be changed directly; use {@link #addPhoto(Photo)
+	 * addPhoto} and {@link #removePhoto(Photo) removePhoto}.
+	 * </p>
+	 * 
 	 * @return album's photos
 	 */
 	public ArrayList<Photo> getPhotos() {
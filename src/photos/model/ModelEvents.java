@@ -0,0 +1,100 @@
+package photos.model;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands out the changes made to the model classes to every registered {@link ModelListener ModelListener}.
+ *
+ * <p>
+ * The model objects are shared between albums and users (a copied or sent photo is the same object), so
+ * the listeners are registered once for the whole program instead of on each object.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class ModelEvents {
+
+	/**
+	 * The registered listeners, in the order they were added.
+	 */
+	private static final CopyOnWriteArrayList<ModelListener> listeners = new CopyOnWriteArrayList<ModelListener>();
+
+	private ModelEvents() {
+	}
+
+	/**
+	 * Registers a listener to be told about every model change.
+	 *
+	 * @param listener
+	 *            listener to add
+	 */
+	public static void addListener(ModelListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Stops telling the given listener about model changes.
+	 *
+	 * @param listener
+	 *            listener to remove
+	 */
+	public static void removeListener(ModelListener listener) {
+		listeners.remove(listener);
+	}
+
+	static void albumAdded(User user, Album album) {
+		for (ModelListener l : listeners)
+			l.albumAdded(user, album);
+	}
+
+	static void albumRemoved(User user, Album album) {
+		for (ModelListener l : listeners)
+			l.albumRemoved(user, album);
+	}
+
+	static void albumRenamed(Album album, String oldName) {
+		for (ModelListener l : listeners)
+			l.albumRenamed(album, oldName);
+	}
+
+	static void smartAlbumAdded(User user, SmartAlbum smartAlbum) {
+		for (ModelListener l : listeners)
+			l.smartAlbumAdded(user, smartAlbum);
+	}
+
+	static void smartAlbumRemoved(User user, SmartAlbum smartAlbum) {
+		for (ModelListener l : listeners)
+			l.smartAlbumRemoved(user, smartAlbum);
+	}
+
+	static void photoAdded(Album album, Photo photo) {
+		for (ModelListener l : listeners)
+			l.photoAdded(album, photo);
+	}
+
+	static void photoRemoved(Album album, Photo photo) {
+		for (ModelListener l : listeners)
+			l.photoRemoved(album, photo);
+	}
+
+	static void photosReordered(Album album) {
+		for (ModelListener l : listeners)
+			l.photosReordered(album);
+	}
+
+	static void tagAdded(Photo photo, Tag tag) {
+		for (ModelListener l : listeners)
+			l.tagAdded(photo, tag);
+	}
+
+	static void tagRemoved(Photo photo, Tag tag) {
+		for (ModelListener l : listeners)
+			l.tagRemoved(photo, tag);
+	}
+
+	static void captionChanged(Photo photo) {
+		for (ModelListener l : listeners)
+			l.captionChanged(photo);
+	}
+}
@@ -0,0 +1,132 @@
+package photos.model;
+
+/**
+ * Receives a callback every time one of the model classes is changed through its public methods.
+ *
+ * <p>
+ * Every method has an empty default so a listener only needs to override the changes it cares about.
+ * Callbacks are made on the thread that performed the change, after the change has been applied.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public interface ModelListener {
+
+	/**
+	 * An album was added to a user.
+	 *
+	 * @param user
+	 *            user the album was added to
+	 * @param album
+	 *            album that was added
+	 */
+	default void albumAdded(User user, Album album) {
+	}
+
+	/**
+	 * An album was removed from a user.
+	 *
+	 * @param user
+	 *            user the album was removed from
+	 * @param album
+	 *            album that was removed
+	 */
+	default void albumRemoved(User user, Album album) {
+	}
+
+	/**
+	 * An album was given a new name.
+	 *
+	 * @param album
+	 *            album that was renamed
+	 * @param oldName
+	 *            name of the album before the change
+	 */
+	default void albumRenamed(Album album, String oldName) {
+	}
+
+	/**
+	 * A smart album was added to a user.
+	 *
+	 * @param user
+	 *            user the smart album was added to
+	 * @param smartAlbum
+	 *            smart album that was added
+	 */
+	default void smartAlbumAdded(User user, SmartAlbum smartAlbum) {
+	}
+
+	/**
+	 * A smart album was removed from a user.
+	 *
+	 * @param user
+	 *            user the smart album was removed from
+	 * @param smartAlbum
+	 *            smart album that was removed
+	 */
+	default void smartAlbumRemoved(User user, SmartAlbum smartAlbum) {
+	}
+
+	/**
+	 * A photo was added to the end of an album.
+	 *
+	 * @param album
+	 *            album the photo was added to
+	 * @param photo
+	 *            photo that was added
+	 */
+	default void photoAdded(Album album, Photo photo) {
+	}
+
+	/**
+	 * A photo was removed from an album.
+	 *
+	 * @param album
+	 *            album the photo was removed from
+	 * @param photo
+	 *            photo that was removed
+	 */
+	default void photoRemoved(Album album, Photo photo) {
+	}
+
+	/**
+	 * The photos of an album were put into a new order.
+	 *
+	 * @param album
+	 *            album that was sorted
+	 */
+	default void photosReordered(Album album) {
+	}
+
+	/**
+	 * A tag was added to a photo.
+	 *
+	 * @param photo
+	 *            photo the tag was added to
+	 * @param tag
+	 *            tag that was added
+	 */
+	default void tagAdded(Photo photo, Tag tag) {
+	}
+
+	/**
+	 * A tag was removed from a photo.
+	 *
+	 * @param photo
+	 *            photo the tag was removed from
+	 * @param tag
+	 *            tag that was removed
+	 */
+	default void tagRemoved(Photo photo, Tag tag) {
+	}
+
+	/**
+	 * A photo was given a new caption.
+	 *
+	 * @param photo
+	 *            photo that was recaptioned
+	 */
+	default void captionChanged(Photo photo) {
+	}
+}
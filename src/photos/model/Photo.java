@@ -5,9 +5,20 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TimeZone;
 
 import javax.imageio.ImageIO;
 
@@ -24,15 +35,61 @@ public class Photo implements Serializable{
 	 */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Saved form of a photo. The tags are saved as a list of {@link Tag Tag}
+	 * objects, as they were before they were kept as numbers. The date is saved as
+	 * <code>time</code>, in milliseconds; photos saved before that have a
+	 * <code>date</code> instead.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("caption", String.class),
+			new ObjectStreamField("date", Calendar.class),
+			new ObjectStreamField("time", long.class),
+			new ObjectStreamField("file", File.class),
+			new ObjectStreamField("tags", ArrayList.class) };
+
+	/**
+	 * Time zone the dates of all photos are shown in.
+	 */
+	private static final ZoneId zone = ZoneId.systemDefault();
+
+	/**
+	 * The same time zone as {@link #zone zone}, to work out days without making
+	 * objects.
+	 */
+	private static final TimeZone timeZone = TimeZone.getTimeZone(zone);
+
+	/**
+	 * Milliseconds in a day.
+	 */
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+	/**
+	 * Order the tags are listed in: by name, then by value.
+	 */
+	private static final Comparator<Tag> BY_NAME = Comparator.comparing(Tag::getName)
+			.thenComparing(Tag::getValue);
+
+	/**
+	 * A photo without tags.
+	 */
+	private static final long[] NO_TAGS = new long[0];
+
+	/**
+	 * Makes the thumbnails, or <code>null</code> to scale the whole image.
+	 */
+	private static volatile ThumbnailMaker thumbnailMaker;
+
 	/**
 	 * Caption of the photo.
 	 */
 	private String caption;
 
 	/**
-	 * The date of the photo. The last time the photo was modified.
+	 * The date of the photo, in milliseconds since the epoch. The last time the
+	 * photo was modified.
 	 */
-	private Calendar date;
+	private transient long date;
 
 	/**
 	 * Represents the file where the photo is located.
@@ -40,9 +97,17 @@ public class Photo implements Serializable{
 	private File file;
 
 	/**
-	 * The structure that holds all of the photo's {@link Tag Tag} objects.
+	 * The photo's tags, each as its {@link Tag#key() key}, in increasing order.
+	 * Shared by no other photo, and replaced rather than changed.
+	 */
+	private transient long[] tags;
+
+	/**
+	 * Identity of the photo: the canonical path of its {@link #file file}. Worked out
+	 * the first time it is needed and kept, so comparing photos doesn't go to the
+	 * file system.
 	 */
-	private ArrayList<Tag> tags;
+	private transient String key;
 
 	/**
 	 * Creates a new <code>Photo</code> instance from the given file with the given
@@ -61,12 +126,11 @@ public class Photo implements Serializable{
 
 		this.file = file;
 
-		date = Calendar.getInstance();
-		date.setTimeInMillis(file.lastModified());
+		date = file.lastModified();
 
 		this.caption = caption;
 
-		tags = new ArrayList<Tag>();
+		tags = NO_TAGS;
 	}
 
 	/**
@@ -85,7 +149,34 @@ public class Photo implements Serializable{
 	public Photo(File file, String caption, ArrayList<Tag> tags) throws FileNotFoundException {
 		this(file, caption);
 
-		this.tags.addAll(tags);
+		this.tags = keys(tags);
+	}
+
+	/**
+	 * Recreates a saved <code>Photo</code> with the given caption, date and tags.
+	 * 
+	 * <p>
+	 * Unlike the other constructors the file doesn't have to exist, so photos whose
+	 * files were moved are still loaded.
+	 * </p>
+	 * 
+	 * @param file
+	 *            the File the photo was created from
+	 * @param caption
+	 *            the caption for the photo
+	 * @param date
+	 *            the date of the photo in milliseconds since the epoch
+	 * @param tags
+	 *            list of Tag objects for the Photo
+	 */
+	public Photo(File file, String caption, long date, List<Tag> tags) {
+		this.file = file;
+
+		this.date = date;
+
+		this.caption = caption;
+
+		this.tags = keys(tags);
 	}
 
 	/**
@@ -105,20 +196,47 @@ public class Photo implements Serializable{
 	 * image at the {@link #file file} location.
 	 * 
 	 * <p>
-	 * The thumbnail is a scaled down version (100x100) of the actual photo.
+	 * The thumbnail is a scaled down version of the actual photo, as large as
+	 * fits in 100x100 keeping its shape. It is made by the
+	 * {@link #setThumbnailMaker(ThumbnailMaker) thumbnail maker}, or scaled from
+	 * the whole image if there is none.
 	 * </p>
 	 * 
-	 * @return the BufferedImage thumbnail of the photo
+	 * @return the BufferedImage thumbnail of the photo, or <code>null</code>
+	 *         if the file is not an image
 	 * @throws IOException
 	 *             if the {@link #file file} cannot be read
 	 */
 	public BufferedImage getThumbnail() throws IOException {
-		BufferedImage thumb = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
-		thumb.createGraphics().drawImage(getImage().getScaledInstance(100, 100, Image.SCALE_SMOOTH), 0, 0, null);
+		ThumbnailMaker maker = thumbnailMaker;
+		if (maker != null)
+			return maker.thumbnail(this);
+
+		BufferedImage image = getImage();
+		if (image == null)
+			return null;
+
+		double scale = Math.min(100.0 / image.getWidth(), 100.0 / image.getHeight());
+		int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+		int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+		BufferedImage thumb = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		thumb.createGraphics().drawImage(image.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
 
 		return thumb;
 	}
 
+	/**
+	 * Sets what makes the thumbnails of every photo.
+	 * 
+	 * @param maker
+	 *            the thumbnail maker, or <code>null</code> to scale the whole
+	 *            image
+	 */
+	public static void setThumbnailMaker(ThumbnailMaker maker) {
+		thumbnailMaker = maker;
+	}
+
 	/**
 	 * Change the photo's caption.
 	 * 
@@ -127,6 +245,7 @@ public class Photo implements Serializable{
 	 */
 	public void recaption(String newCaption) {
 		caption = newCaption;
+		ModelEvents.captionChanged(this);
 	}
 
 	/**
@@ -134,8 +253,8 @@ public class Photo implements Serializable{
 	 * 
 	 * <p>
 	 * The result is <code>true</code> if the argument is a <code>Photo</code>
-	 * object and has the same path, obtained from {@link #file file}, as this
-	 * object.
+	 * object and has the same {@link #getKey() key}, the canonical path of its
+	 * {@link #file file}, as this object.
 	 * </p>
 	 * 
 	 * @param o
@@ -144,20 +263,47 @@ public class Photo implements Serializable{
 	 **/
 	@Override
 	public boolean equals(Object o) {
+		if (this == o)
+			return true;
+
 		if (!(o instanceof Photo))
 			return false;
 
-		Photo photo = (Photo) o;
+		return getKey().equals(((Photo) o).getKey());
+	}
 
-		try {
-			if (!file.getCanonicalPath().equals(photo.getFile().getCanonicalPath()))
-				return false;
-		} catch (Exception e) {
-			if (!file.getPath().equals(photo.getFile().getPath()))
-				return false;
+	/**
+	 * Returns a hash code for the photo, consistent with {@link #equals(Object)
+	 * equals}.
+	 * 
+	 * @return hash code of the photo's {@link #getKey() key}
+	 */
+	@Override
+	public int hashCode() {
+		return getKey().hashCode();
+	}
+
+	/**
+	 * Gets the identity of the photo: the canonical path of its file, or its
+	 * absolute path if the canonical path cannot be found.
+	 * 
+	 * <p>
+	 * Two photos of the same file have the same key. It is worked out once per
+	 * photo.
+	 * </p>
+	 * 
+	 * @return the photo's key
+	 */
+	public String getKey() {
+		if (key == null) {
+			try {
+				key = file.getCanonicalPath();
+			} catch (IOException e) {
+				key = file.getAbsoluteFile().toPath().normalize().toString();
+			}
 		}
 
-		return true;
+		return key;
 	}
 
 	/**
@@ -173,10 +319,20 @@ public class Photo implements Serializable{
 	 * @return true if tag is added; false otherwise.
 	 */
 	public boolean addTag(Tag tag) {
-		if (tags.contains(tag))
+		long key = tag.key();
+		int index = Arrays.binarySearch(tags, key);
+
+		if (index >= 0)
 			return false;
 
-		tags.add(tag);
+		index = -index - 1;
+		long[] added = new long[tags.length + 1];
+		System.arraycopy(tags, 0, added, 0, index);
+		added[index] = key;
+		System.arraycopy(tags, index, added, index + 1, tags.length - index);
+		tags = added;
+
+		ModelEvents.tagAdded(this, tag);
 
 		return true;
 	}
@@ -194,7 +350,54 @@ public class Photo implements Serializable{
 	 * @return true if photo is removed; false otherwise.
 	 */
 	public boolean removeTag(Tag tag) {
-		return tags.remove(tag);
+		int index = Arrays.binarySearch(tags, tag.key());
+
+		if (index < 0)
+			return false;
+
+		long[] removed = new long[tags.length - 1];
+		System.arraycopy(tags, 0, removed, 0, index);
+		System.arraycopy(tags, index + 1, removed, index, removed.length - index);
+		tags = removed;
+
+		ModelEvents.tagRemoved(this, tag);
+
+		return true;
+	}
+
+	/**
+	 * Returns whether the photo has a tag.
+	 * 
+	 * @param tag
+	 *            tag to look for
+	 * @return true if the photo has a tag with the same name and value; false
+	 *         otherwise.
+	 */
+	public boolean hasTag(Tag tag) {
+		return Arrays.binarySearch(tags, tag.key()) >= 0;
+	}
+
+	/**
+	 * Replaces the photo's tags with the given tags.
+	 * 
+	 * <p>
+	 * Tags the photo already has are kept, the rest are removed, and the new ones
+	 * are added.
+	 * </p>
+	 * 
+	 * @param newTags
+	 *            the tags the photo should have
+	 */
+	public void setTags(List<Tag> newTags) {
+		long[] wanted = keys(newTags);
+
+		for (long key : tags) {
+			if (Arrays.binarySearch(wanted, key) < 0)
+				removeTag(new Tag(key));
+		}
+
+		for (long key : wanted)
+			addTag(new Tag(key));
 	}
 
 	/**
@@ -214,17 +417,84 @@ public class Photo implements Serializable{
 	 */
 	public void setCaption(String caption) {
 		this.caption = caption;
+		ModelEvents.captionChanged(this);
 	}
 
 	/**
 	 * Gets the date of the photo.
 	 * 
+	 * <p>
+	 * The calendar is made for the caller; {@link #getTime() getTime} and the
+	 * <code>java.time</code> accessors don't make one.
+	 * </p>
+	 * 
 	 * @return date of the photo
 	 */
 	public Calendar getDate() {
+		Calendar calendar = Calendar.getInstance(timeZone);
+		calendar.setTimeInMillis(date);
+		return calendar;
+	}
+
+	/**
+	 * Gets the date of the photo in milliseconds since the epoch, to compare or
+	 * sort photos by date.
+	 * 
+	 * @return time of the photo
+	 */
+	public long getTime() {
 		return date;
 	}
 
+	/**
+	 * Gets the date of the photo as an instant.
+	 * 
+	 * @return instant of the photo
+	 */
+	public Instant getInstant() {
+		return Instant.ofEpochMilli(date);
+	}
+
+	/**
+	 * Gets the date and time of the photo in the {@link #getZone() time zone}
+	 * photos are shown in.
+	 * 
+	 * @return local date and time of the photo
+	 */
+	public LocalDateTime getDateTime() {
+		return LocalDateTime.ofInstant(getInstant(), zone);
+	}
+
+	/**
+	 * Gets the day the photo was taken, in the {@link #getZone() time zone}
+	 * photos are shown in.
+	 * 
+	 * @return day of the photo
+	 */
+	public LocalDate getLocalDate() {
+		return LocalDate.ofEpochDay(getEpochDay());
+	}
+
+	/**
+	 * Gets the day the photo was taken as a number, counted from 1970-01-01 in the
+	 * {@link #getZone() time zone} photos are shown in.
+	 * 
+	 * @return the same day as {@link #getLocalDate() getLocalDate}, as its
+	 *         epoch day
+	 */
+	public long getEpochDay() {
+		return Math.floorDiv(date + timeZone.getOffset(date), DAY_MILLIS);
+	}
+
+	/**
+	 * Gets the time zone the dates of all photos are shown in.
+	 * 
+	 * @return the time zone
+	 */
+	public static ZoneId getZone() {
+		return zone;
+	}
+
 	/**
 	 * Gets the file of the photo.
 	 * 
@@ -237,9 +507,93 @@ public class Photo implements Serializable{
 	/**
 	 * Gets photo's tags.
 	 * 
+	 * <p>
+	 * The tags are listed by name, then by value. The list is made for the caller,
+	 * so changing it doesn't change the photo; use {@link #addTag(Tag) addTag} and
+	 * {@link #removeTag(Tag) removeTag}.
+	 * </p>
+	 * 
 	 * @return photo's tags
 	 */
 	public ArrayList<Tag> getTags() {
+		ArrayList<Tag> list = new ArrayList<Tag>(tags.length);
+		for (long key : tags)
+			list.add(new Tag(key));
+
+		list.sort(BY_NAME);
+		return list;
+	}
+
+	/**
+	 * Gets the number of tags the photo has.
+	 * 
+	 * @return number of tags
+	 */
+	public int getTagCount() {
+		return tags.length;
+	}
+
+	/**
+	 * Gets the {@link Tag#key() keys} of the photo's tags, in increasing order,
+	 * without making a {@link Tag Tag} for each. Use {@link Tag#nameOf(long)
+	 * nameOf} and {@link Tag#valueOf(long) valueOf} to read them.
+	 * 
+	 * @return keys of the photo's tags, which must not be changed
+	 */
+	public long[] getTagKeys() {
 		return tags;
 	}
+
+	/**
+	 * Returns the {@link Tag#key() keys} of the given tags, in increasing order
+	 * and each once.
+	 */
+	private static long[] keys(List<Tag> list) {
+		if (list.isEmpty())
+			return NO_TAGS;
+
+		long[] keys = new long[list.size()];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = list.get(i).key();
+		Arrays.sort(keys);
+
+		int n = 0;
+		for (int i = 0; i < keys.length; i++) {
+			if (n == 0 || keys[i] != keys[n - 1])
+				keys[n++] = keys[i];
+		}
+		return n == keys.length ? keys : Arrays.copyOf(keys, n);
+	}
+
+	/**
+	 * Saves the photo with its tags as a list of {@link Tag Tag} objects.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("caption", caption);
+		fields.put("time", date);
+		fields.put("file", file);
+		fields.put("tags", getTags());
+		out.writeFields();
+	}
+
+	/**
+	 * Reads a saved photo, keeping its tags as numbers.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		caption = (String) fields.get("caption", null);
+		file = (File) fields.get("file", null);
+
+		// photos saved before dates were kept as numbers have a calendar
+		if (fields.defaulted("time")) {
+			Calendar saved = (Calendar) fields.get("date", null);
+			date = saved == null ? 0 : saved.getTimeInMillis();
+		} else
+			date = fields.get("time", 0L);
+
+		ArrayList<Tag> saved = (ArrayList<Tag>) fields.get("tags", null);
+		tags = saved == null ? NO_TAGS : keys(saved);
+	}
 }
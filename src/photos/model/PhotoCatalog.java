@@ -0,0 +1,144 @@
+package photos.model;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A class that keeps every photo of a user once, however many of the user's albums have it.
+ *
+ * <p>
+ * Each photo is counted once for every album that has it, and once more if the inbox has it, so a photo
+ * is only dropped from the catalog when the last of them lets it go. The catalog is kept by the
+ * {@link User User} as photos are added to and removed from its albums, so getting all of a user's
+ * photos, or finding out whether it has any, doesn't go through the albums.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class PhotoCatalog {
+
+	/**
+	 * Every photo in the user's albums or inbox, with the number of them that have it, in the order they
+	 * were first added.
+	 */
+	private final LinkedHashMap<Photo, Integer> photos = new LinkedHashMap<Photo, Integer>();
+
+	/**
+	 * The photos in at least one of the user's albums, not counting the inbox, with the number of albums
+	 * that have it.
+	 */
+	private final LinkedHashMap<Photo, Integer> albumPhotos = new LinkedHashMap<Photo, Integer>();
+
+	/**
+	 * The photo objects in the user's albums or inbox, with the number of them that have each. Two photos of
+	 * the same file added separately are counted apart here.
+	 */
+	private final IdentityHashMap<Photo, Integer> objects = new IdentityHashMap<Photo, Integer>();
+
+	/**
+	 * Creates an empty catalog.
+	 */
+	PhotoCatalog() {
+	}
+
+	/**
+	 * Counts a photo that was added to an album or the inbox.
+	 *
+	 * @param photo
+	 *            the photo added
+	 * @param inbox
+	 *            true if it was added to the inbox
+	 */
+	void add(Photo photo, boolean inbox) {
+		photos.merge(photo, 1, Integer::sum);
+		objects.merge(photo, 1, Integer::sum);
+		if (!inbox)
+			albumPhotos.merge(photo, 1, Integer::sum);
+	}
+
+	/**
+	 * Stops counting a photo that was removed from an album or the inbox.
+	 *
+	 * @param photo
+	 *            the photo removed
+	 * @param inbox
+	 *            true if it was removed from the inbox
+	 */
+	void remove(Photo photo, boolean inbox) {
+		release(photos, photo);
+		release(objects, photo);
+		if (!inbox)
+			release(albumPhotos, photo);
+	}
+
+	/**
+	 * Gets every photo of the user, in its albums or its inbox.
+	 *
+	 * @return the photos, each once, which can't be changed
+	 */
+	public Set<Photo> getPhotos() {
+		return Collections.unmodifiableSet(photos.keySet());
+	}
+
+	/**
+	 * Gets the photos in the user's albums, not counting those only in the inbox.
+	 *
+	 * @return the photos, each once, which can't be changed
+	 */
+	public Set<Photo> getAlbumPhotos() {
+		return Collections.unmodifiableSet(albumPhotos.keySet());
+	}
+
+	/**
+	 * Returns whether the user has a photo in one of its albums or its inbox.
+	 *
+	 * @param photo
+	 *            photo to look for
+	 * @return true if the user has a photo equal to the given one; false otherwise.
+	 */
+	public boolean contains(Photo photo) {
+		return photos.containsKey(photo);
+	}
+
+	/**
+	 * Returns whether the user has this very photo object in one of its albums or its inbox, and not only
+	 * a photo of the same file.
+	 *
+	 * @param photo
+	 *            photo to look for
+	 * @return true if the user holds the given object; false otherwise.
+	 */
+	public boolean holds(Photo photo) {
+		return objects.containsKey(photo);
+	}
+
+	/**
+	 * Gets the number of the user's albums, and its inbox, that have a photo.
+	 *
+	 * @param photo
+	 *            photo to count
+	 * @return number of albums with the photo, 0 if the user doesn't have it
+	 */
+	public int getReferences(Photo photo) {
+		Integer count = photos.get(photo);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * Takes one away from a photo's count, dropping it when none are left.
+	 */
+	private static void release(Map<Photo, Integer> counts, Photo photo) {
+		Integer count = counts.get(photo);
+		if (count == null)
+			return;
+
+		if (count == 1)
+			counts.remove(photo);
+		else
+			counts.put(photo, count - 1);
+	}
+}
@@ -0,0 +1,97 @@
+package photos.model;
+
+import java.io.Serializable;
+
+/**
+ * A class that represents a saved search in the Photos application: an album whose photos are the photos
+ * of the user's albums that match its query, instead of photos added to it.
+ *
+ * <p>
+ * Only the name and the query are kept here. Which photos match is worked out and kept up to date by
+ * the search index as the user's albums and photos change.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class SmartAlbum implements Serializable {
+
+	/**
+	 * Value for Serialization
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The name of the smart album.
+	 */
+	private String name;
+
+	/**
+	 * The saved search, written the way it is typed on the search screen.
+	 */
+	private String query;
+
+	/**
+	 * Creates a new <code>SmartAlbum</code> instance with the given name and query.
+	 *
+	 * @param name
+	 *            smart album name
+	 * @param query
+	 *            search whose results are the album's photos
+	 */
+	public SmartAlbum(String name, String query) {
+		this.name = name;
+		this.query = query;
+	}
+
+	/**
+	 * Gets smart album's name.
+	 *
+	 * @return smart album's name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the saved search.
+	 *
+	 * @return the query, as typed on the search screen
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Compares this <code>SmartAlbum</code> to the specified <code>Object</code>.
+	 *
+	 * <p>
+	 * The result is <code>true</code> if the argument is a <code>SmartAlbum</code> object and has the same
+	 * {@link #name name} as this object.
+	 * </p>
+	 *
+	 * @param o
+	 *            object to compare
+	 * @return true if this object is equal to o; false otherwise.
+	 **/
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof SmartAlbum))
+			return false;
+
+		return name.equals(((SmartAlbum) o).getName());
+	}
+
+	@Override
+	public int hashCode() {
+		return name.hashCode();
+	}
+
+	/**
+	 * Prints the smart album's name
+	 * @return smart album name
+	 */
+	public String toString() {
+		return name;
+	}
+}
@@ -1,10 +1,20 @@
 package photos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
  * A class that represents a tag in the Photo's application.
  * 
+ * <p>
+ * The name and value are kept as numbers given by {@link TagStrings TagStrings},
+ * so tags share their strings and are compared by number. They are still saved
+ * as strings.
+ * </p>
+ * 
  * @author Nick Fasullo
  * 
  */
@@ -16,14 +26,21 @@ public class Tag implements Serializable{
 	private static final long serialVersionUID = 1L;
 
 	/**
-	 * The tag name.
+	 * Saved form of a tag: its name and value as strings.
+	 */
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("name", String.class),
+			new ObjectStreamField("value", String.class) };
+
+	/**
+	 * Number of the tag name.
 	 */
-	private String name;
+	private transient int name;
 
 	/**
-	 * The tag value.
+	 * Number of the tag value.
 	 */
-	private String value;
+	private transient int value;
 
 	/**
 	 * Creates a new <code>Tag</code> instance with the given name and value.
@@ -34,8 +51,51 @@ public class Tag implements Serializable{
 	 *            the tag value
 	 */
 	public Tag(String name, String value) {
-		this.name = name;
-		this.value = value;
+		this.name = TagStrings.intern(name);
+		this.value = TagStrings.intern(value);
+	}
+
+	/**
+	 * Recreates a tag from its {@link #key() key}.
+	 * 
+	 * @param key
+	 *            key of the tag
+	 */
+	Tag(long key) {
+		name = (int) (key >>> 32);
+		value = (int) key;
+	}
+
+	/**
+	 * Gets the numbers of the tag's name and value as one number, the name in the
+	 * high half. Equal tags have equal keys.
+	 * 
+	 * @return the tag's key
+	 */
+	public long key() {
+		return (long) name << 32 | (value & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Gets the name of the tag with a key.
+	 * 
+	 * @param key
+	 *            a tag's {@link #key() key}
+	 * @return the tag's name
+	 */
+	public static String nameOf(long key) {
+		return TagStrings.string((int) (key >>> 32));
+	}
+
+	/**
+	 * Gets the value of the tag with a key.
+	 * 
+	 * @param key
+	 *            a tag's {@link #key() key}
+	 * @return the tag's value
+	 */
+	public static String valueOf(long key) {
+		return TagStrings.string((int) key);
 	}
 
 	/**
@@ -57,13 +117,18 @@ public class Tag implements Serializable{
 
 		Tag tag = (Tag) o;
 
-		if (!name.equals(tag.getName()))
-			return false;
-
-		if (!value.equals(tag.getValue()))
-			return false;
+		return name == tag.name && value == tag.value;
+	}
 
-		return true;
+	/**
+	 * Returns a hash code for the tag, consistent with {@link #equals(Object)
+	 * equals}.
+	 * 
+	 * @return hash code of the tag's name and value
+	 */
+	@Override
+	public int hashCode() {
+		return 31 * name + value;
 	}
 
 	/**
@@ -72,17 +137,22 @@ public class Tag implements Serializable{
 	 * @return tag's value
 	 */
 	public String getValue() {
-		return value;
+		return TagStrings.string(value);
 	}
 
 	/**
 	 * Sets tag's value.
 	 * 
+	 * <p>
+	 * Only this tag changes. A photo keeps its tags as keys, so a tag already
+	 * added to a photo stays on it with the old value.
+	 * </p>
+	 * 
 	 * @param value
 	 *            tag's new value
 	 */
 	public void setValue(String value) {
-		this.value = value;
+		this.value = TagStrings.intern(value);
 	}
 
 	/**
@@ -91,17 +161,52 @@ public class Tag implements Serializable{
 	 * @return tag's name
 	 */
 	public String getName() {
+		return TagStrings.string(name);
+	}
+
+	/**
+	 * Gets the number {@link TagStrings TagStrings} gave the tag's name.
+	 * 
+	 * @return number of the tag's name
+	 */
+	public int getNameNumber() {
 		return name;
 	}
 
+	/**
+	 * Gets the number {@link TagStrings TagStrings} gave the tag's value.
+	 * 
+	 * @return number of the tag's value
+	 */
+	public int getValueNumber() {
+		return value;
+	}
+
 	/**
 	 * Prints the tag in Name: Value format
 	 * 
 	 * @return tag name value pair
 	 */
 	public String toString(){
-		return this.name + ": " + this.value;
+		return getName() + ": " + getValue();
+	}
+
+	/**
+	 * Saves the tag's name and value as strings.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("name", getName());
+		fields.put("value", getValue());
+		out.writeFields();
+	}
+
+	/**
+	 * Reads a saved tag, numbering its name and value.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		name = TagStrings.intern((String) fields.get("name", null));
+		value = TagStrings.intern((String) fields.get("value", null));
 	}
-	
-	
 }
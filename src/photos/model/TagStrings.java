@@ -0,0 +1,130 @@
+package photos.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The names and values of every tag in the library, each kept once and numbered.
+ *
+ * <p>
+ * A {@link Tag Tag} holds the numbers of its name and value instead of the strings, so the same name or
+ * value used on thousands of photos is only in memory once, and two tags are compared by comparing two
+ * numbers. Strings are never dropped, so a number always means the same string while the program runs;
+ * the numbers are not saved.
+ * </p>
+ *
+ * <p>
+ * This is the only place tag strings are kept. The strings are also kept in alphabetical order, so the
+ * ones starting with what has been typed can be listed, and anything counting tags, like the search
+ * index's tag dictionary, counts them by number.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public final class TagStrings {
+
+	/**
+	 * The number of each string.
+	 */
+	private static final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+
+	/**
+	 * The strings, by number.
+	 */
+	private static String[] strings = new String[256];
+
+	/**
+	 * The numbers of the strings, in alphabetical order of the strings.
+	 */
+	private static int[] order = new int[256];
+
+	/**
+	 * Number of strings kept.
+	 */
+	private static int size;
+
+	private TagStrings() {
+	}
+
+	/**
+	 * Gets the number of a string, numbering it if it is new.
+	 *
+	 * @param s
+	 *            a tag name or value
+	 * @return the string's number
+	 */
+	static synchronized int intern(String s) {
+		Integer id = ids.get(s);
+		if (id != null)
+			return id;
+
+		if (size == strings.length) {
+			strings = Arrays.copyOf(strings, size * 2);
+			order = Arrays.copyOf(order, size * 2);
+		}
+
+		int at = first(s);
+		System.arraycopy(order, at, order, at + 1, size - at);
+		order[at] = size;
+
+		strings[size] = s;
+		ids.put(s, size);
+		return size++;
+	}
+
+	/**
+	 * Gets the number of a string without numbering it.
+	 *
+	 * @param s
+	 *            a tag name or value
+	 * @return the string's number, or -1 if no tag has used it
+	 */
+	public static synchronized int find(String s) {
+		Integer id = ids.get(s);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the string with a number.
+	 *
+	 * @param id
+	 *            a number given to a tag name or value
+	 * @return the string
+	 */
+	public static synchronized String string(int id) {
+		return strings[id];
+	}
+
+	/**
+	 * Lists the numbers of the strings starting with a prefix.
+	 *
+	 * @param prefix
+	 *            start of the strings
+	 * @return their numbers, in alphabetical order of the strings
+	 */
+	public static synchronized int[] startingWith(String prefix) {
+		int from = first(prefix);
+		int to = from;
+		while (to < size && strings[order[to]].startsWith(prefix))
+			to++;
+
+		return Arrays.copyOfRange(order, from, to);
+	}
+
+	/**
+	 * Finds where a string is, or would go, in the alphabetical order.
+	 */
+	private static int first(String s) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (strings[order[middle]].compareTo(s) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+}
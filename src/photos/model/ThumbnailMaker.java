@@ -0,0 +1,29 @@
+package photos.model;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Makes the thumbnails returned by {@link Photo#getThumbnail() Photo.getThumbnail}.
+ *
+ * <p>
+ * The model doesn't know how images are decoded or cached, so the program gives it a maker with
+ * {@link Photo#setThumbnailMaker(ThumbnailMaker) Photo.setThumbnailMaker} when it starts.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public interface ThumbnailMaker {
+
+	/**
+	 * Makes a thumbnail of a photo, as large as fits in 100x100 keeping its shape.
+	 *
+	 * @param photo
+	 *            photo to make a thumbnail of
+	 * @return the thumbnail, or <code>null</code> if the file is not an image
+	 * @throws IOException
+	 *             if the photo's file cannot be read
+	 */
+	BufferedImage thumbnail(Photo photo) throws IOException;
+}
@@ -1,5 +1,7 @@
 package photos.model;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Optional;
@@ -32,11 +34,42 @@ public class User implements Serializable{
 	 */
 	private ArrayList<Album> albums;
 	
+	/**
+	 * The user's saved searches, listed with the albums.
+	 */
+	private ArrayList<SmartAlbum> smartAlbums;
+
 	/**
 	 * inbox location for when another user send a photo to you
 	 */
 	private Album inbox;
 
+	/**
+	 * Loads the user's albums the first time they are needed. <code>null</code> once
+	 * the albums are loaded, or if they never had to be.
+	 */
+	private transient Loader loader;
+
+	/**
+	 * Every photo in the user's albums and inbox, once each. Built when first needed.
+	 */
+	private transient PhotoCatalog catalog;
+
+	/**
+	 * Loads the albums of a user whose saved data hasn't been read yet.
+	 */
+	public interface Loader {
+
+		/**
+		 * Reads the saved albums of the user and gives them to it through
+		 * {@link User#restore(ArrayList, Album) restore}.
+		 * 
+		 * @param user
+		 *            user to load
+		 */
+		void load(User user);
+	}
+
 	/**
 	 * Creates a new <code>User</code> instance with the given username and
 	 * password.
@@ -51,7 +84,9 @@ public class User implements Serializable{
 		this.password = password;
 
 		albums = new ArrayList<Album>();
+		smartAlbums = new ArrayList<SmartAlbum>();
 		inbox = new Album("Inbox");
+		inbox.setOwner(this);
 	}
 
 	/**
@@ -67,10 +102,18 @@ public class User implements Serializable{
 	 * @return true if album is added; false otherwise.
 	 */
 	public boolean addAlbum(Album album) {
+		load();
+
 		if (albums.contains(album))
 			return false;
 
 		albums.add(album);
+		album.setOwner(this);
+		if (catalog != null) {
+			for (Photo photo : album.getPhotos())
+				catalog.add(photo, false);
+		}
+		ModelEvents.albumAdded(this, album);
 
 		return true;
 	}
@@ -88,7 +131,83 @@ public class User implements Serializable{
 	 * @return true if album is removed; false otherwise.
 	 */
 	public boolean removeAlbum(Album album) {
-		return albums.remove(album);
+		load();
+
+		int index = albums.indexOf(album);
+
+		if (index == -1)
+			return false;
+
+		Album removed = albums.remove(index);
+		if (catalog != null) {
+			for (Photo photo : removed.getPhotos())
+				catalog.remove(photo, false);
+		}
+		ModelEvents.albumRemoved(this, removed);
+
+		// changes to the album no longer concern the user
+		removed.setOwner(null);
+
+		return true;
+	}
+
+	/**
+	 * Adds given smart album to the user.
+	 * 
+	 * <p>
+	 * If the user already has a smart album with the same name it will not be added
+	 * and will return <code>false</code>.
+	 * </p>
+	 * 
+	 * @param smartAlbum
+	 *            smart album to add to the user
+	 * @return true if smart album is added; false otherwise.
+	 */
+	public boolean addSmartAlbum(SmartAlbum smartAlbum) {
+		load();
+
+		if (smartAlbums.contains(smartAlbum))
+			return false;
+
+		smartAlbums.add(smartAlbum);
+		ModelEvents.smartAlbumAdded(this, smartAlbum);
+
+		return true;
+	}
+
+	/**
+	 * Removes given smart album from the user.
+	 * 
+	 * @param smartAlbum
+	 *            smart album to remove from the user
+	 * @return true if smart album is removed; false otherwise.
+	 */
+	public boolean removeSmartAlbum(SmartAlbum smartAlbum) {
+		load();
+
+		int index = smartAlbums.indexOf(smartAlbum);
+		if (index == -1)
+			return false;
+
+		SmartAlbum removed = smartAlbums.remove(index);
+		ModelEvents.smartAlbumRemoved(this, removed);
+
+		return true;
+	}
+
+	/**
+	 * Gets user's smart albums.
+	 * 
+	 * <p>
+	 * The list must not be changed directly; use {@link #addSmartAlbum(SmartAlbum)
+	 * addSmartAlbum} and {@link #removeSmartAlbum(SmartAlbum) removeSmartAlbum}.
+	 * </p>
+	 * 
+	 * @return user's smart albums
+	 */
+	public ArrayList<SmartAlbum> getSmartAlbums() {
+		load();
+		return smartAlbums;
 	}
 
 	/**
@@ -144,19 +263,165 @@ public class User implements Serializable{
 	 * @return user's albums
 	 */
 	public ArrayList<Album> getAlbums() {
+		load();
+
 		return albums;
 	}
 
+	/**
+	 * Gets the catalog of every photo in the user's albums and inbox.
+	 * 
+	 * <p>
+	 * The catalog is built from the albums the first time it is needed, and kept
+	 * up to date as photos are added and removed after that.
+	 * </p>
+	 * 
+	 * @return user's photo catalog
+	 */
+	public PhotoCatalog getCatalog() {
+		load();
+
+		if (catalog == null) {
+			catalog = new PhotoCatalog();
+			for (Album album : albums) {
+				for (Photo photo : album.getPhotos())
+					catalog.add(photo, false);
+			}
+			for (Photo photo : inbox.getPhotos())
+				catalog.add(photo, true);
+		}
+
+		return catalog;
+	}
+
+	/**
+	 * Counts a photo added to one of the user's albums or its inbox in the
+	 * {@link #catalog catalog}.
+	 * 
+	 * @param album
+	 *            album the photo was added to
+	 * @param photo
+	 *            photo added
+	 */
+	void photoAdded(Album album, Photo photo) {
+		if (catalog != null)
+			catalog.add(photo, album == inbox);
+	}
+
+	/**
+	 * Stops counting a photo removed from one of the user's albums or its inbox
+	 * in the {@link #catalog catalog}.
+	 * 
+	 * @param album
+	 *            album the photo was removed from
+	 * @param photo
+	 *            photo removed
+	 */
+	void photoRemoved(Album album, Photo photo) {
+		if (catalog != null)
+			catalog.remove(photo, album == inbox);
+	}
+
 	/**
 	 * Gets the user's inbox album
 	 * @return inbox album
 	 */
 	public Album getInbox(){
+		load();
+
 		return this.inbox;
 	}
 	
 	
 	
+	/**
+	 * Makes the user read its albums from the given loader the first time they are
+	 * needed, instead of now.
+	 * 
+	 * @param loader
+	 *            loader for the user's albums
+	 */
+	public void setLoader(Loader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Returns whether the user's albums are in memory.
+	 * 
+	 * @return true if the albums are loaded; false if they will be loaded when
+	 *         needed
+	 */
+	public boolean isLoaded() {
+		return loader == null;
+	}
+
+	/**
+	 * Loads the user's albums now, if they haven't been loaded yet.
+	 */
+	public void load() {
+		if (loader == null)
+			return;
+
+		Loader l = loader;
+		loader = null;
+		l.load(this);
+	}
+
+	/**
+	 * Gives the user the albums and inbox read from its saved data.
+	 * 
+	 * @param savedAlbums
+	 *            the user's albums
+	 * @param savedInbox
+	 *            the user's inbox
+	 */
+	public void restore(ArrayList<Album> savedAlbums, Album savedInbox) {
+		restore(savedAlbums, new ArrayList<SmartAlbum>(), savedInbox);
+	}
+
+	/**
+	 * Gives the user the albums, smart albums and inbox read from its saved data.
+	 * 
+	 * @param savedAlbums
+	 *            the user's albums
+	 * @param savedSmartAlbums
+	 *            the user's smart albums
+	 * @param savedInbox
+	 *            the user's inbox
+	 */
+	public void restore(ArrayList<Album> savedAlbums, ArrayList<SmartAlbum> savedSmartAlbums, Album savedInbox) {
+		albums = savedAlbums;
+		smartAlbums = savedSmartAlbums;
+		inbox = savedInbox;
+		catalog = null;
+
+		for (Album album : albums)
+			album.setOwner(this);
+		inbox.setOwner(this);
+	}
+
+	/**
+	 * Reads the user from a stream and points its albums back at it.
+	 * 
+	 * @param in
+	 *            stream to read the user from
+	 * @throws IOException
+	 *             if the user cannot be read
+	 * @throws ClassNotFoundException
+	 *             if a class of the user's data cannot be found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+
+		// users saved before smart albums have none
+		if (smartAlbums == null)
+			smartAlbums = new ArrayList<SmartAlbum>();
+
+		for (Album album : albums)
+			album.setOwner(this);
+		inbox.setOwner(this);
+	}
+	
 	/**
 	 * Prints the user's username
 	 * @return username
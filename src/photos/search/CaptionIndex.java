@@ -0,0 +1,426 @@
+package photos.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds photos by the words of their captions, and ranks them by how well their captions match.
+ *
+ * <p>
+ * Captions are split into words at every character that isn't a letter or a digit, so the default
+ * caption "IMG_0042.jpg" has the words "img", "0042" and "jpg". Each word maps to the ids of the photos
+ * whose captions have it, and the words are kept sorted so every word starting with a prefix is found
+ * together. The words of each caption are kept too, for checking phrases and counting words when ranking.
+ * Each word is given a number the first time it is seen, and captions are kept as those numbers, so
+ * checking a caption compares numbers instead of strings.
+ * </p>
+ *
+ * <p>
+ * Photos are ranked with BM25: a word counts for more the fewer captions have it and the more often it is
+ * in the caption, and less in long captions than in short ones.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class CaptionIndex {
+
+	/**
+	 * How quickly more of the same word stops adding to the rank.
+	 */
+	private static final double K1 = 1.2;
+
+	/**
+	 * How much a long caption is held against a photo, from 0 (not at all) to 1.
+	 */
+	private static final double B = 0.75;
+
+	/**
+	 * A word of the captions: its number and the ids of the photos with it.
+	 */
+	private static class Word {
+
+		final String spelling;
+
+		final int number;
+
+		final IntSet ids = new IntSet();
+
+		Word(String spelling, int number) {
+			this.spelling = spelling;
+			this.number = number;
+		}
+	}
+
+	/**
+	 * Each word in the captions.
+	 */
+	private final TreeMap<String, Word> postings = new TreeMap<String, Word>();
+
+	/**
+	 * Number to give the next new word. Numbers of words no longer used are not given out again.
+	 */
+	private int nextNumber;
+
+	/**
+	 * Each word by its number, <code>null</code> once no caption has it.
+	 */
+	private Word[] numbered = new Word[16];
+
+	/**
+	 * Numbers of the words of each photo's caption, by id, <code>null</code> for ids not in use.
+	 */
+	private int[][] captions = new int[16][];
+
+	/**
+	 * Number of captions indexed.
+	 */
+	private int count;
+
+	/**
+	 * Number of words in all the captions.
+	 */
+	private long words;
+
+	/**
+	 * Indexes the caption of a photo.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param caption
+	 *            the caption
+	 */
+	public void add(int id, String caption) {
+		List<String> tokens = tokenize(caption);
+		int[] numbers = new int[tokens.size()];
+
+		for (int i = 0; i < numbers.length; i++) {
+			Word word = postings.get(tokens.get(i));
+			if (word == null) {
+				word = new Word(tokens.get(i), nextNumber);
+				postings.put(word.spelling, word);
+
+				if (nextNumber == numbered.length)
+					numbered = Arrays.copyOf(numbered, numbered.length * 2);
+				numbered[nextNumber++] = word;
+			}
+			word.ids.add(id);
+			numbers[i] = word.number;
+		}
+
+		if (id >= captions.length)
+			captions = Arrays.copyOf(captions, Math.max(id + 1, captions.length * 2));
+		captions[id] = numbers;
+		count++;
+		words += numbers.length;
+	}
+
+	/**
+	 * Forgets the caption of a photo.
+	 *
+	 * @param id
+	 *            id of the photo
+	 */
+	public void remove(int id) {
+		if (id >= captions.length || captions[id] == null)
+			return;
+
+		int[] numbers = captions[id];
+		captions[id] = null;
+		count--;
+		words -= numbers.length;
+
+		for (int number : numbers) {
+			Word word = numbered[number];
+			if (word != null && word.ids.remove(id) && word.ids.isEmpty()) {
+				postings.remove(word.spelling);
+				numbered[number] = null;
+			}
+		}
+	}
+
+	/**
+	 * Finds the photos whose captions have the given words one after another.
+	 *
+	 * @param phrase
+	 *            the words, as split by {@link #tokenize(String) tokenize}
+	 * @param prefix
+	 *            whether the last word only has to start the caption's word
+	 * @return ids of the matching photos
+	 */
+	public IntSet match(List<String> phrase, boolean prefix) {
+		if (phrase.isEmpty())
+			return new IntSet();
+
+		// every word has to be there; start from the rarest
+		List<IntSet> lists = new ArrayList<IntSet>();
+		for (int i = 0; i < phrase.size(); i++)
+			lists.add(ids(phrase.get(i), prefix && i == phrase.size() - 1));
+		lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+		IntSet found = lists.get(0);
+		for (int i = 1; i < lists.size() && !found.isEmpty(); i++)
+			found = IntSet.and(found, lists.get(i));
+
+		if (found.isEmpty())
+			return found;
+
+		if (phrase.size() == 1)
+			return found;
+
+		// then they have to be next to each other
+		BitSet[] numbers = new BitSet[phrase.size()];
+		for (int i = 0; i < numbers.length; i++)
+			numbers[i] = numbers(phrase.get(i), prefix && i == phrase.size() - 1);
+
+		int[] candidates = found.toArray();
+		int n = 0;
+		for (int id : candidates) {
+			if (hasPhrase(captions[id], numbers))
+				candidates[n++] = id;
+		}
+
+		return IntSet.of(Arrays.copyOf(candidates, n));
+	}
+
+	/**
+	 * Estimates the number of photos {@link #match(List, boolean) match} finds, without finding them.
+	 *
+	 * @param phrase
+	 *            the words
+	 * @param prefix
+	 *            whether the last word only has to start the caption's word
+	 * @return the number of photos with the rarest of the words, which is at least the number found
+	 */
+	public int estimate(List<String> phrase, boolean prefix) {
+		if (phrase.isEmpty())
+			return 0;
+
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < phrase.size(); i++) {
+			if (prefix && i == phrase.size() - 1) {
+				long sum = 0;
+				for (Word word : withPrefix(phrase.get(i)).values())
+					sum += word.ids.size();
+				min = (int) Math.min(min, sum);
+			} else {
+				Word word = postings.get(phrase.get(i));
+				min = Math.min(min, word == null ? 0 : word.ids.size());
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Orders photos by how well their captions match some words, best first.
+	 *
+	 * @param found
+	 *            ids of the photos to order
+	 * @param phrases
+	 *            the words searched for, as lists of words
+	 * @param prefixes
+	 *            for each list, whether its last word only had to start the caption's word
+	 * @return the ids, best match first; photos that match equally well stay in order of their ids
+	 */
+	public int[] rank(IntSet found, List<List<String>> phrases, List<Boolean> prefixes) {
+		int[] ids = found.toArray();
+
+		// which words each term matches and how rare they are is the same for every photo, so it is worked
+		// out once
+		List<BitSet> terms = new ArrayList<BitSet>();
+		List<Double> weights = new ArrayList<Double>();
+		for (int p = 0; p < phrases.size(); p++) {
+			List<String> phrase = phrases.get(p);
+			for (int i = 0; i < phrase.size(); i++) {
+				boolean prefix = prefixes.get(p) && i == phrase.size() - 1;
+				int df = prefix ? ids(phrase.get(i), true).size() : estimate(phrase.subList(i, i + 1), false);
+
+				terms.add(numbers(phrase.get(i), prefix));
+				weights.add(Math.log(1 + (count - df + 0.5) / (df + 0.5)));
+			}
+		}
+
+		BitSet[] termNumbers = terms.toArray(new BitSet[0]);
+		double[] termWeights = new double[termNumbers.length];
+		for (int t = 0; t < termWeights.length; t++)
+			termWeights[t] = weights.get(t);
+
+		double average = count == 0 ? 1 : (double) words / count;
+		double[] scores = new double[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			int[] caption = captions[ids[i]];
+			if (caption == null)
+				continue;
+
+			double norm = K1 * (1 - B + B * caption.length / average);
+			for (int t = 0; t < termNumbers.length; t++) {
+				int tf = frequency(caption, termNumbers[t]);
+				if (tf > 0)
+					scores[i] += termWeights[t] * tf * (K1 + 1) / (tf + norm);
+			}
+		}
+
+		int[] order = byScore(scores);
+		int[] ranked = new int[ids.length];
+		for (int i = 0; i < ranked.length; i++)
+			ranked[i] = ids[order[i]];
+		return ranked;
+	}
+
+	/**
+	 * Splits text into lower case words at every character that isn't a letter or a digit.
+	 *
+	 * @param text
+	 *            text to split
+	 * @return the words, in order
+	 */
+	public static List<String> tokenize(String text) {
+		List<String> tokens = new ArrayList<String>();
+		if (text == null)
+			return tokens;
+
+		int start = -1;
+		for (int i = 0; i <= text.length(); i++) {
+			boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+			if (wordChar && start == -1)
+				start = i;
+			else if (!wordChar && start != -1) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	/**
+	 * Checks whether a caption has some words one after another, the way {@link #match(List, boolean)
+	 * match} does, without an index.
+	 *
+	 * @param caption
+	 *            words of the caption, as split by {@link #tokenize(String) tokenize}
+	 * @param phrase
+	 *            the words to look for
+	 * @param prefix
+	 *            whether the last word only has to start the caption's word
+	 * @return true if the caption has the words
+	 */
+	public static boolean contains(List<String> caption, List<String> phrase, boolean prefix) {
+		if (phrase.isEmpty())
+			return false;
+
+		int last = phrase.size() - 1;
+		for (int start = 0; start + last < caption.size(); start++) {
+			int i = 0;
+			while (i < last && caption.get(start + i).equals(phrase.get(i)))
+				i++;
+
+			if (i == last && (prefix ? caption.get(start + i).startsWith(phrase.get(i))
+					: caption.get(start + i).equals(phrase.get(i))))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the positions of scores, highest score first and equal scores in order of position.
+	 *
+	 * <p>
+	 * Broad searches rank tens of thousands of photos, so this is a radix sort, a byte of the scores at a
+	 * time, rather than a comparison sort. Scores are never negative, so their float bits sort the same way
+	 * the scores do, and flipping the bits puts the highest first.
+	 * </p>
+	 */
+	private static int[] byScore(double[] scores) {
+		int n = scores.length;
+		int[] keys = new int[n];
+		for (int i = 0; i < n; i++)
+			keys[i] = ~Float.floatToIntBits((float) scores[i]);
+
+		int[] order = new int[n];
+		int[] next = new int[n];
+		for (int i = 0; i < n; i++)
+			order[i] = i;
+
+		for (int shift = 0; shift < 32; shift += 8) {
+			int[] starts = new int[257];
+			for (int i = 0; i < n; i++)
+				starts[(keys[i] >>> shift & 0xff) + 1]++;
+
+			// a byte that is the same in every score changes nothing
+			if (n == 0 || starts[(keys[0] >>> shift & 0xff) + 1] == n)
+				continue;
+
+			for (int b = 0; b < 256; b++)
+				starts[b + 1] += starts[b];
+			for (int i : order)
+				next[starts[keys[i] >>> shift & 0xff]++] = i;
+
+			int[] swap = order;
+			order = next;
+			next = swap;
+		}
+		return order;
+	}
+
+	/**
+	 * Returns the photos with a word, or with any word starting with it.
+	 */
+	private IntSet ids(String word, boolean prefix) {
+		if (!prefix) {
+			Word found = postings.get(word);
+			return found == null ? new IntSet() : found.ids;
+		}
+
+		IntSet found = new IntSet();
+		for (Word each : withPrefix(word).values())
+			found = IntSet.or(found, each.ids);
+		return found;
+	}
+
+	/**
+	 * Returns the numbers of a word, or of every word starting with it.
+	 */
+	private BitSet numbers(String word, boolean prefix) {
+		BitSet numbers = new BitSet();
+		if (!prefix) {
+			Word found = postings.get(word);
+			if (found != null)
+				numbers.set(found.number);
+		} else {
+			for (Word each : withPrefix(word).values())
+				numbers.set(each.number);
+		}
+		return numbers;
+	}
+
+	private Map<String, Word> withPrefix(String prefix) {
+		return postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+	}
+
+	private static boolean hasPhrase(int[] caption, BitSet[] phrase) {
+		for (int start = 0; start + phrase.length <= caption.length; start++) {
+			int i = 0;
+			while (i < phrase.length && phrase[i].get(caption[start + i]))
+				i++;
+
+			if (i == phrase.length)
+				return true;
+		}
+		return false;
+	}
+
+	private static int frequency(int[] caption, BitSet term) {
+		int tf = 0;
+		for (int number : caption) {
+			if (term.get(number))
+				tf++;
+		}
+		return tf;
+	}
+}
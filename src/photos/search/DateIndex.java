@@ -0,0 +1,138 @@
+package photos.search;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the ids of photos sorted by the day they were taken, so the photos of a day or of a range of days
+ * are found with a binary search.
+ *
+ * <p>
+ * Days are counted from 1970-01-01 in the time zone photos are shown in, as given by
+ * {@link photos.model.Photo#getEpochDay() Photo.getEpochDay}, the same day the photo shows when its date
+ * is printed.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class DateIndex {
+
+	/**
+	 * Day of every entry, in ascending order.
+	 */
+	private long[] days = new long[16];
+
+	/**
+	 * Photo id of every entry, matching {@link #days days}.
+	 */
+	private int[] ids = new int[16];
+
+	/**
+	 * Number of entries.
+	 */
+	private int size;
+
+	/**
+	 * Records the day of a photo.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param day
+	 *            day of the photo, counted from 1970-01-01
+	 */
+	public void add(int id, long day) {
+		int index = upperBound(day);
+
+		if (size == days.length) {
+			days = Arrays.copyOf(days, size * 2);
+			ids = Arrays.copyOf(ids, size * 2);
+		}
+
+		System.arraycopy(days, index, days, index + 1, size - index);
+		System.arraycopy(ids, index, ids, index + 1, size - index);
+		days[index] = day;
+		ids[index] = id;
+		size++;
+	}
+
+	/**
+	 * Forgets the day of a photo.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param day
+	 *            day of the photo, as it was when it was added
+	 */
+	public void remove(int id, long day) {
+		for (int index = lowerBound(day); index < size && days[index] == day; index++) {
+			if (ids[index] == id) {
+				System.arraycopy(days, index + 1, days, index, size - index - 1);
+				System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+				size--;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Gets the photos taken from one day to another.
+	 *
+	 * @param from
+	 *            first day, counted from 1970-01-01
+	 * @param to
+	 *            last day, counted from 1970-01-01
+	 * @return ids of the photos taken on or between the days
+	 */
+	public IntSet between(long from, long to) {
+		if (from > to)
+			return new IntSet();
+
+		int start = lowerBound(from);
+		int end = upperBound(to);
+
+		return IntSet.of(Arrays.copyOfRange(ids, start, end));
+	}
+
+	/**
+	 * Gets the number of photos taken from one day to another, without collecting them.
+	 *
+	 * @param from
+	 *            first day, counted from 1970-01-01
+	 * @param to
+	 *            last day, counted from 1970-01-01
+	 * @return number of photos taken on or between the days
+	 */
+	public int count(long from, long to) {
+		return from > to ? 0 : upperBound(to) - lowerBound(from);
+	}
+
+	/**
+	 * Returns the first entry on or after the given day.
+	 */
+	private int lowerBound(long day) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] < day)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the first entry after the given day.
+	 */
+	private int upperBound(long day) {
+		int low = 0, high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] <= day)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+}
@@ -0,0 +1,86 @@
+package photos.search;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The number of photos in a search's scope with a tag name, and with each of its values.
+ *
+ * <p>
+ * Made by {@link FacetCounter FacetCounter}. A facet for a tag name lists its values most used first; a
+ * facet for a value has no values of its own.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class Facet {
+
+	private final String name;
+
+	private final int count;
+
+	/**
+	 * Ids of every photo with the tag, not only those in the scope, as kept by the index.
+	 */
+	final IntSet ids;
+
+	private final List<Facet> values;
+
+	Facet(String name, int count, IntSet ids, List<Facet> values) {
+		this.name = name;
+		this.count = count;
+		this.ids = ids;
+		this.values = values;
+	}
+
+	/**
+	 * Gets the tag name or value, in lower case.
+	 *
+	 * @return the name or value
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the number of photos in the scope with the tag.
+	 *
+	 * @return number of photos
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the most used values of a tag name in the scope.
+	 *
+	 * @param max
+	 *            most values to get
+	 * @return the values, most used first, and in alphabetical order when used as often
+	 */
+	public List<Facet> getValues(int max) {
+		return Collections.unmodifiableList(values.subList(0, Math.min(max, values.size())));
+	}
+
+	/**
+	 * Gets the number of values of a tag name used in the scope.
+	 *
+	 * @return number of values
+	 */
+	public int getValueCount() {
+		return values.size();
+	}
+
+	/**
+	 * Gets every value of a tag name used in the scope, for counting a narrower scope from them.
+	 */
+	List<Facet> values() {
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + count + ")";
+	}
+}
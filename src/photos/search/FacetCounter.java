@@ -0,0 +1,67 @@
+package photos.search;
+
+import java.util.List;
+
+/**
+ * Counts the tag names and values of the photos in a scope, such as an album or the results of a search,
+ * to show what there is to search for.
+ *
+ * <p>
+ * The counts come from the sizes of the tag index's posting lists within the scope. As filters are added
+ * the scope only gets smaller, and a tag none of the photos had before can't turn up, so a scope inside
+ * the last one counted only counts again the tags the last one had. Anything else, or any change to the
+ * tags in between, counts every tag again.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class FacetCounter {
+
+	private final UserIndex index;
+
+	/**
+	 * The scope last counted, <code>null</code> before the first count.
+	 */
+	private IntSet scope;
+
+	/**
+	 * The facets of the scope last counted.
+	 */
+	private List<Facet> facets;
+
+	/**
+	 * The {@link TagIndex#version() version} of the tags when they were last counted.
+	 */
+	private long version;
+
+	/**
+	 * Creates a counter for a user's photos.
+	 *
+	 * @param index
+	 *            the user's index
+	 */
+	public FacetCounter(UserIndex index) {
+		this.index = index;
+	}
+
+	/**
+	 * Counts the tag names and values of the photos in a scope.
+	 *
+	 * @param scope
+	 *            ids of the photos to count, which must not change while they are counted
+	 * @return a facet for each tag name the scope has, most used first
+	 */
+	public List<Facet> count(IntSet scope) {
+		TagIndex tags = index.tags();
+
+		if (this.scope != null && version == tags.version() && IntSet.andSize(scope, this.scope) == scope.size())
+			facets = tags.narrow(facets, scope);
+		else
+			facets = tags.facets(scope);
+
+		this.scope = scope;
+		version = tags.version();
+		return facets;
+	}
+}
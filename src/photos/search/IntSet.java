@@ -0,0 +1,680 @@
+package photos.search;
+
+import java.util.Arrays;
+
+/**
+ * A compressed set of non-negative ints, used as the posting list of an index entry and to combine search
+ * conditions.
+ *
+ * <p>
+ * The ints are split by their upper 16 bits into chunks of 65,536, and each chunk that has any values is
+ * kept in the form that suits it: a sorted array of its lower 16 bits while it has at most
+ * {@value #ARRAY_MAX} values, or a bitmap of 65,536 bits once it has more. A rare tag costs two bytes a
+ * photo and a common one an eighth of a byte a photo. Sets are combined chunk by chunk, bitmaps a word of
+ * 64 values at a time, so combining costs the size of the sets rather than the size of the library.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class IntSet {
+
+	/**
+	 * Most values a chunk keeps as an array. An array of that many values takes the same 8 KB as a
+	 * bitmap.
+	 */
+	static final int ARRAY_MAX = 4096;
+
+	/**
+	 * Upper 16 bits of the values of each chunk, in ascending order.
+	 */
+	private char[] keys;
+
+	/**
+	 * The chunks, matching {@link #keys keys}. None are empty.
+	 */
+	private Chunk[] chunks;
+
+	/**
+	 * Number of chunks.
+	 */
+	private int count;
+
+	/**
+	 * Number of values in the set.
+	 */
+	private int size;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public IntSet() {
+		keys = new char[4];
+		chunks = new Chunk[4];
+	}
+
+	/**
+	 * Makes a set of the given values, which don't have to be in order.
+	 *
+	 * @param values
+	 *            values of the set
+	 * @return the set
+	 */
+	public static IntSet of(int[] values) {
+		if (values.length == 0)
+			return new IntSet();
+
+		// marking the values in one bitmap and cutting it into chunks is quicker than sorting them
+		int max = 0;
+		for (int value : values)
+			max = Math.max(max, value);
+
+		long[] bits = new long[((max >>> 16) + 1) * 1024];
+		for (int value : values)
+			bits[value >>> 6] |= 1L << value;
+
+		IntSet set = new IntSet();
+		for (int key = 0; key <= max >>> 16; key++)
+			set.append((char) key, BitmapChunk.of(Arrays.copyOfRange(bits, key * 1024, (key + 1) * 1024)));
+
+		return set;
+	}
+
+	/**
+	 * Adds a value to the set.
+	 *
+	 * @param value
+	 *            value to add
+	 * @return true if the value was added; false if it was already in the set
+	 */
+	public boolean add(int value) {
+		char key = (char) (value >>> 16);
+		int index = find(key);
+
+		if (index < 0) {
+			index = -index - 1;
+			insert(index, key, new ArrayChunk());
+		}
+
+		Chunk chunk = chunks[index];
+		int before = chunk.size();
+		chunks[index] = chunk.add((char) value);
+		if (chunks[index].size() == before)
+			return false;
+
+		size++;
+		return true;
+	}
+
+	/**
+	 * Removes a value from the set.
+	 *
+	 * @param value
+	 *            value to remove
+	 * @return true if the value was removed; false if it wasn't in the set
+	 */
+	public boolean remove(int value) {
+		int index = find((char) (value >>> 16));
+		if (index < 0)
+			return false;
+
+		Chunk chunk = chunks[index];
+		int before = chunk.size();
+		chunks[index] = chunk.remove((char) value);
+		if (chunks[index].size() == before)
+			return false;
+
+		size--;
+		if (chunks[index].size() == 0)
+			delete(index);
+		return true;
+	}
+
+	/**
+	 * Returns whether a value is in the set.
+	 *
+	 * @param value
+	 *            value to look for
+	 * @return true if the set has the value; false otherwise
+	 */
+	public boolean contains(int value) {
+		int index = find((char) (value >>> 16));
+		return index >= 0 && chunks[index].contains((char) value);
+	}
+
+	/**
+	 * Gets the number of values in the set.
+	 *
+	 * @return size of the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether the set is empty.
+	 *
+	 * @return true if the set has no values; false otherwise
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the smallest value in the set.
+	 *
+	 * @return the smallest value
+	 * @throws IllegalStateException
+	 *             if the set is empty
+	 */
+	public int first() {
+		if (size == 0)
+			throw new IllegalStateException("empty set");
+		return keys[0] << 16 | chunks[0].first();
+	}
+
+	/**
+	 * Returns the values of the set, smallest first.
+	 *
+	 * @return a new array of the values
+	 */
+	public int[] toArray() {
+		int[] out = new int[size];
+
+		int n = 0;
+		for (int i = 0; i < count; i++)
+			n = chunks[i].fill(out, n, keys[i] << 16);
+
+		return out;
+	}
+
+	/**
+	 * Returns the values in either set.
+	 *
+	 * @param a
+	 *            first set
+	 * @param b
+	 *            second set
+	 * @return a new set
+	 */
+	public static IntSet or(IntSet a, IntSet b) {
+		IntSet out = new IntSet();
+		int i = 0, j = 0;
+
+		while (i < a.count || j < b.count) {
+			char x = i < a.count ? a.keys[i] : Character.MAX_VALUE;
+			char y = j < b.count ? b.keys[j] : Character.MAX_VALUE;
+
+			if (j == b.count || (i < a.count && x < y))
+				out.append(x, a.chunks[i++].copy());
+			else if (i == a.count || y < x)
+				out.append(y, b.chunks[j++].copy());
+			else
+				out.append(x, a.chunks[i++].or(b.chunks[j++]));
+		}
+
+		return out;
+	}
+
+	/**
+	 * Returns the values in both sets.
+	 *
+	 * @param a
+	 *            first set
+	 * @param b
+	 *            second set
+	 * @return a new set
+	 */
+	public static IntSet and(IntSet a, IntSet b) {
+		IntSet out = new IntSet();
+		int i = 0, j = 0;
+
+		while (i < a.count && j < b.count) {
+			if (a.keys[i] < b.keys[j])
+				i++;
+			else if (a.keys[i] > b.keys[j])
+				j++;
+			else
+				out.append(a.keys[i], a.chunks[i++].and(b.chunks[j++]));
+		}
+
+		return out;
+	}
+
+	/**
+	 * Counts the values in both sets, without making a set of them.
+	 *
+	 * @param a
+	 *            first set
+	 * @param b
+	 *            second set
+	 * @return the number of values in both sets
+	 */
+	public static int andSize(IntSet a, IntSet b) {
+		int n = 0;
+		int i = 0, j = 0;
+
+		while (i < a.count && j < b.count) {
+			if (a.keys[i] < b.keys[j])
+				i++;
+			else if (a.keys[i] > b.keys[j])
+				j++;
+			else
+				n += a.chunks[i++].andSize(b.chunks[j++]);
+		}
+
+		return n;
+	}
+
+	/**
+	 * Returns the values in the first set that are not in the second.
+	 *
+	 * @param a
+	 *            set to take values from
+	 * @param b
+	 *            values to leave out
+	 * @return a new set
+	 */
+	public static IntSet andNot(IntSet a, IntSet b) {
+		IntSet out = new IntSet();
+		int j = 0;
+
+		for (int i = 0; i < a.count; i++) {
+			while (j < b.count && b.keys[j] < a.keys[i])
+				j++;
+
+			if (j < b.count && b.keys[j] == a.keys[i])
+				out.append(a.keys[i], a.chunks[i].andNot(b.chunks[j]));
+			else
+				out.append(a.keys[i], a.chunks[i].copy());
+		}
+
+		return out;
+	}
+
+	/**
+	 * Returns the position of the chunk with the given key, or <code>-(insertion point) - 1</code> if there
+	 * is none.
+	 */
+	private int find(char key) {
+		return Arrays.binarySearch(keys, 0, count, key);
+	}
+
+	private void insert(int index, char key, Chunk chunk) {
+		if (count == keys.length) {
+			keys = Arrays.copyOf(keys, count * 2);
+			chunks = Arrays.copyOf(chunks, count * 2);
+		}
+
+		System.arraycopy(keys, index, keys, index + 1, count - index);
+		System.arraycopy(chunks, index, chunks, index + 1, count - index);
+		keys[index] = key;
+		chunks[index] = chunk;
+		count++;
+	}
+
+	private void delete(int index) {
+		System.arraycopy(keys, index + 1, keys, index, count - index - 1);
+		System.arraycopy(chunks, index + 1, chunks, index, count - index - 1);
+		chunks[--count] = null;
+	}
+
+	/**
+	 * Adds a chunk after every other chunk, unless it is empty.
+	 */
+	private void append(char key, Chunk chunk) {
+		if (chunk.size() == 0)
+			return;
+
+		insert(count, key, chunk);
+		size += chunk.size();
+	}
+
+	/**
+	 * The values of a set that share their upper 16 bits, by their lower 16 bits. Changing a chunk returns
+	 * the chunk to keep, which is a different kind of chunk when the old one no longer suits its size.
+	 */
+	private static abstract class Chunk {
+
+		abstract int size();
+
+		abstract boolean contains(char value);
+
+		abstract Chunk add(char value);
+
+		abstract Chunk remove(char value);
+
+		abstract char first();
+
+		/**
+		 * Writes the values, each or'ed with the upper bits, from the given position of the array.
+		 * Returns the position after the last value written.
+		 */
+		abstract int fill(int[] out, int at, int upper);
+
+		abstract Chunk copy();
+
+		abstract Chunk and(Chunk other);
+
+		abstract int andSize(Chunk other);
+
+		abstract Chunk or(Chunk other);
+
+		abstract Chunk andNot(Chunk other);
+
+		/**
+		 * Returns the chunk as 1024 words of 64 bits.
+		 */
+		abstract long[] words();
+	}
+
+	/**
+	 * A chunk with few values, kept as a sorted array.
+	 */
+	private static final class ArrayChunk extends Chunk {
+
+		char[] values;
+
+		int size;
+
+		ArrayChunk() {
+			values = new char[4];
+		}
+
+		ArrayChunk(char[] values, int size) {
+			this.values = values;
+			this.size = size;
+		}
+
+		@Override
+		int size() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return Arrays.binarySearch(values, 0, size, value) >= 0;
+		}
+
+		@Override
+		Chunk add(char value) {
+			int index = Arrays.binarySearch(values, 0, size, value);
+			if (index >= 0)
+				return this;
+
+			if (size == ARRAY_MAX)
+				return new BitmapChunk(words(), size).add(value);
+
+			index = -index - 1;
+			if (size == values.length)
+				values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+			System.arraycopy(values, index, values, index + 1, size - index);
+			values[index] = value;
+			size++;
+
+			return this;
+		}
+
+		@Override
+		Chunk remove(char value) {
+			int index = Arrays.binarySearch(values, 0, size, value);
+			if (index < 0)
+				return this;
+
+			System.arraycopy(values, index + 1, values, index, size - index - 1);
+			size--;
+
+			return this;
+		}
+
+		@Override
+		char first() {
+			return values[0];
+		}
+
+		@Override
+		int fill(int[] out, int at, int upper) {
+			for (int i = 0; i < size; i++)
+				out[at++] = upper | values[i];
+			return at;
+		}
+
+		@Override
+		Chunk copy() {
+			return new ArrayChunk(Arrays.copyOf(values, size), size);
+		}
+
+		@Override
+		Chunk and(Chunk other) {
+			char[] out = new char[size];
+			int n = 0;
+
+			if (other instanceof ArrayChunk) {
+				ArrayChunk b = (ArrayChunk) other;
+				int i = 0, j = 0;
+				while (i < size && j < b.size) {
+					char x = values[i], y = b.values[j];
+					if (x == y)
+						out[n++] = x;
+					if (x <= y)
+						i++;
+					if (y <= x)
+						j++;
+				}
+			} else {
+				for (int i = 0; i < size; i++) {
+					if (other.contains(values[i]))
+						out[n++] = values[i];
+				}
+			}
+
+			return new ArrayChunk(out, n);
+		}
+
+		@Override
+		int andSize(Chunk other) {
+			int n = 0;
+
+			if (other instanceof ArrayChunk) {
+				ArrayChunk b = (ArrayChunk) other;
+				int i = 0, j = 0;
+				while (i < size && j < b.size) {
+					char x = values[i], y = b.values[j];
+					if (x == y)
+						n++;
+					if (x <= y)
+						i++;
+					if (y <= x)
+						j++;
+				}
+			} else {
+				for (int i = 0; i < size; i++) {
+					if (other.contains(values[i]))
+						n++;
+				}
+			}
+
+			return n;
+		}
+
+		@Override
+		Chunk or(Chunk other) {
+			if (!(other instanceof ArrayChunk) || size + other.size() > ARRAY_MAX)
+				return BitmapChunk.of(BitmapChunk.or(words(), other.words()));
+
+			ArrayChunk b = (ArrayChunk) other;
+			char[] out = new char[size + b.size];
+			int i = 0, j = 0, n = 0;
+			while (i < size && j < b.size) {
+				char x = values[i], y = b.values[j];
+				if (x <= y)
+					i++;
+				if (y <= x)
+					j++;
+				out[n++] = x < y ? x : y;
+			}
+			while (i < size)
+				out[n++] = values[i++];
+			while (j < b.size)
+				out[n++] = b.values[j++];
+
+			return new ArrayChunk(out, n);
+		}
+
+		@Override
+		Chunk andNot(Chunk other) {
+			char[] out = new char[size];
+			int n = 0;
+			for (int i = 0; i < size; i++) {
+				if (!other.contains(values[i]))
+					out[n++] = values[i];
+			}
+
+			return new ArrayChunk(out, n);
+		}
+
+		@Override
+		long[] words() {
+			long[] words = new long[1024];
+			for (int i = 0; i < size; i++)
+				words[values[i] >>> 6] |= 1L << values[i];
+			return words;
+		}
+	}
+
+	/**
+	 * A chunk with many values, kept as a bitmap.
+	 */
+	private static final class BitmapChunk extends Chunk {
+
+		final long[] words;
+
+		int size;
+
+		BitmapChunk(long[] words, int size) {
+			this.words = words;
+			this.size = size;
+		}
+
+		/**
+		 * Makes the chunk that suits the given bits: an array if there are few of them, otherwise a bitmap.
+		 */
+		static Chunk of(long[] words) {
+			int size = 0;
+			for (long word : words)
+				size += Long.bitCount(word);
+
+			if (size > ARRAY_MAX)
+				return new BitmapChunk(words, size);
+
+			char[] values = new char[size];
+			int n = 0;
+			for (int i = 0; i < words.length; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1)
+					values[n++] = (char) (i << 6 | Long.numberOfTrailingZeros(word));
+			}
+			return new ArrayChunk(values, size);
+		}
+
+		static long[] or(long[] a, long[] b) {
+			for (int i = 0; i < a.length; i++)
+				a[i] |= b[i];
+			return a;
+		}
+
+		@Override
+		int size() {
+			return size;
+		}
+
+		@Override
+		boolean contains(char value) {
+			return (words[value >>> 6] & 1L << value) != 0;
+		}
+
+		@Override
+		Chunk add(char value) {
+			if (!contains(value)) {
+				words[value >>> 6] |= 1L << value;
+				size++;
+			}
+			return this;
+		}
+
+		@Override
+		Chunk remove(char value) {
+			if (!contains(value))
+				return this;
+
+			words[value >>> 6] &= ~(1L << value);
+			size--;
+
+			return size > ARRAY_MAX ? this : of(words);
+		}
+
+		@Override
+		char first() {
+			int i = 0;
+			while (words[i] == 0)
+				i++;
+			return (char) (i << 6 | Long.numberOfTrailingZeros(words[i]));
+		}
+
+		@Override
+		int fill(int[] out, int at, int upper) {
+			for (int i = 0; i < words.length; i++) {
+				for (long word = words[i]; word != 0; word &= word - 1)
+					out[at++] = upper | i << 6 | Long.numberOfTrailingZeros(word);
+			}
+			return at;
+		}
+
+		@Override
+		Chunk copy() {
+			return new BitmapChunk(words.clone(), size);
+		}
+
+		@Override
+		Chunk and(Chunk other) {
+			if (other instanceof ArrayChunk)
+				return other.and(this);
+
+			long[] b = ((BitmapChunk) other).words;
+			long[] out = new long[1024];
+			for (int i = 0; i < out.length; i++)
+				out[i] = words[i] & b[i];
+			return of(out);
+		}
+
+		@Override
+		int andSize(Chunk other) {
+			if (other instanceof ArrayChunk)
+				return other.andSize(this);
+
+			long[] b = ((BitmapChunk) other).words;
+			int n = 0;
+			for (int i = 0; i < words.length; i++)
+				n += Long.bitCount(words[i] & b[i]);
+			return n;
+		}
+
+		@Override
+		Chunk or(Chunk other) {
+			return of(or(words.clone(), other instanceof BitmapChunk ? ((BitmapChunk) other).words : other.words()));
+		}
+
+		@Override
+		Chunk andNot(Chunk other) {
+			long[] b = other instanceof BitmapChunk ? ((BitmapChunk) other).words : other.words();
+			long[] out = new long[1024];
+			for (int i = 0; i < out.length; i++)
+				out[i] = words[i] & ~b[i];
+			return of(out);
+		}
+
+		@Override
+		long[] words() {
+			return words.clone();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package photos.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import photos.model.Photo;
+
+/**
+ * Numbers the photos of a user's albums with small, dense ids, so the indexes can hold ints instead of
+ * photos.
+ *
+ * <p>
+ * A photo is counted once for every album it is in and keeps its id until it has been taken out of all
+ * of them. Ids freed that way are given to the next new photo, so they stay close to 0.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class PhotoIds {
+
+	/**
+	 * Id of every numbered photo.
+	 */
+	private final HashMap<Photo, Integer> ids = new HashMap<Photo, Integer>();
+
+	/**
+	 * Photo of every id, <code>null</code> for a freed id.
+	 */
+	private final ArrayList<Photo> photos = new ArrayList<Photo>();
+
+	/**
+	 * Number of albums each id's photo is in.
+	 */
+	private int[] counts = new int[16];
+
+	/**
+	 * Freed ids, given out again before new ones.
+	 */
+	private final IntSet free = new IntSet();
+
+	/**
+	 * Ids in use.
+	 */
+	private final IntSet used = new IntSet();
+
+	/**
+	 * Counts a photo into one more album, numbering it if it is new.
+	 *
+	 * @param photo
+	 *            photo that was added to an album
+	 * @return the photo's id if it wasn't numbered before; -1 if it already was
+	 */
+	public int add(Photo photo) {
+		Integer id = ids.get(photo);
+		if (id != null) {
+			counts[id]++;
+			return -1;
+		}
+
+		int newId;
+		if (!free.isEmpty()) {
+			newId = free.first();
+			free.remove(newId);
+			photos.set(newId, photo);
+		} else {
+			newId = photos.size();
+			photos.add(photo);
+			if (newId == counts.length)
+				counts = Arrays.copyOf(counts, newId * 2);
+		}
+
+		ids.put(photo, newId);
+		counts[newId] = 1;
+		used.add(newId);
+
+		return newId;
+	}
+
+	/**
+	 * Counts a photo out of one album, freeing its id if it is in no album anymore.
+	 *
+	 * @param photo
+	 *            photo that was removed from an album
+	 * @return the id that was freed; -1 if the photo is still in another album or wasn't numbered
+	 */
+	public int remove(Photo photo) {
+		Integer id = ids.get(photo);
+		if (id == null || --counts[id] > 0)
+			return -1;
+
+		ids.remove(photo);
+		photos.set(id, null);
+		free.add(id);
+		used.remove(id);
+
+		return id;
+	}
+
+	/**
+	 * Gets the id of a photo.
+	 *
+	 * @param photo
+	 *            photo to look up
+	 * @return the photo's id, or -1 if the photo isn't in any album
+	 */
+	public int id(Photo photo) {
+		Integer id = ids.get(photo);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Gets the photo with an id.
+	 *
+	 * @param id
+	 *            id to look up
+	 * @return the photo, or <code>null</code> if the id is free
+	 */
+	public Photo photo(int id) {
+		return photos.get(id);
+	}
+
+	/**
+	 * Gets the ids of every numbered photo.
+	 *
+	 * @return ids in use, which must not be changed
+	 */
+	public IntSet all() {
+		return used;
+	}
+
+	/**
+	 * Gets the number of photos numbered.
+	 *
+	 * @return number of photos in the user's albums
+	 */
+	public int size() {
+		return ids.size();
+	}
+}
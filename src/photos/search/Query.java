@@ -0,0 +1,312 @@
+package photos.search;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import photos.model.Photo;
+import photos.model.Tag;
+
+/**
+ * A search for photos: conditions on tags and dates, combined with AND, OR and NOT.
+ *
+ * <p>
+ * Queries are made with the static methods, or read from text by {@link QueryParser QueryParser}, and run
+ * against a user's photos by {@link QueryPlanner QueryPlanner}. They are immutable.
+ * </p>
+ *
+ * <p>
+ * A query can also be checked against a single photo, the way a smart album checks a photo that changed,
+ * without going through the index. The photo matches exactly when the planner would find it.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public abstract class Query {
+
+	Query() {
+	}
+
+	/**
+	 * Checks whether a photo matches the query.
+	 *
+	 * @param photo
+	 *            photo to check
+	 * @return true if the photo matches
+	 */
+	abstract boolean matches(Photo photo);
+
+	/**
+	 * Matches the photos with a tag.
+	 *
+	 * @param name
+	 *            name of the tag, compared ignoring case
+	 * @param value
+	 *            value of the tag, compared ignoring case, or <code>null</code> for any value
+	 * @return the query
+	 */
+	public static Query tag(String name, String value) {
+		return new TagTerm(name, value);
+	}
+
+	/**
+	 * Matches the photos whose captions have the words of the given text, one after another.
+	 *
+	 * @param text
+	 *            words to look for, compared ignoring case; if the text ends with <code>*</code> the last
+	 *            word only has to start a word of the caption
+	 * @return the query
+	 */
+	public static Query caption(String text) {
+		String trimmed = text.trim();
+		return new TextTerm(CaptionIndex.tokenize(trimmed), trimmed.endsWith("*"));
+	}
+
+	/**
+	 * Matches the photos taken from one day to another.
+	 *
+	 * @param from
+	 *            first day
+	 * @param to
+	 *            last day
+	 * @return the query
+	 */
+	public static Query dates(LocalDate from, LocalDate to) {
+		return new DateTerm(from, to);
+	}
+
+	/**
+	 * Matches the photos every given query matches.
+	 *
+	 * @param queries
+	 *            queries to combine
+	 * @return the query
+	 */
+	public static Query and(List<Query> queries) {
+		return queries.size() == 1 ? queries.get(0) : new And(queries);
+	}
+
+	/**
+	 * Matches the photos any given query matches.
+	 *
+	 * @param queries
+	 *            queries to combine
+	 * @return the query
+	 */
+	public static Query or(List<Query> queries) {
+		return queries.size() == 1 ? queries.get(0) : new Or(queries);
+	}
+
+	/**
+	 * Matches the photos the given query doesn't.
+	 *
+	 * @param query
+	 *            query to negate
+	 * @return the query
+	 */
+	public static Query not(Query query) {
+		return new Not(query);
+	}
+
+	/**
+	 * A tag condition.
+	 */
+	static final class TagTerm extends Query {
+
+		final String name;
+
+		/**
+		 * Value of the tag, or <code>null</code> for any value.
+		 */
+		final String value;
+
+		TagTerm(String name, String value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			String wantedName = normalize(name);
+			String wantedValue = value == null ? null : normalize(value);
+
+			for (long key : photo.getTagKeys()) {
+				if (normalize(Tag.nameOf(key)).equals(wantedName)
+						&& (wantedValue == null || normalize(Tag.valueOf(key)).equals(wantedValue)))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return name + ":" + (value == null ? "*" : quote(value));
+		}
+
+		private static String quote(String value) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"')
+					return '"' + value.replace("\"", "") + '"';
+			}
+			return value;
+		}
+	}
+
+	/**
+	 * A caption condition: words that have to be in the caption one after another.
+	 */
+	static final class TextTerm extends Query {
+
+		final List<String> words;
+
+		/**
+		 * Whether the last word only has to start a word of the caption.
+		 */
+		final boolean prefix;
+
+		TextTerm(List<String> words, boolean prefix) {
+			this.words = Collections.unmodifiableList(new ArrayList<String>(words));
+			this.prefix = prefix;
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			return CaptionIndex.contains(CaptionIndex.tokenize(photo.getCaption()), words, prefix);
+		}
+
+		@Override
+		public String toString() {
+			String text = String.join(" ", words) + (prefix ? "*" : "");
+
+			// a single word is only quoted if it would be read back as an operator
+			boolean operator = text.equalsIgnoreCase("and") || text.equalsIgnoreCase("or")
+					|| text.equalsIgnoreCase("not");
+			return words.size() == 1 && !operator ? text : '"' + text + '"';
+		}
+	}
+
+	/**
+	 * A date condition, both days included.
+	 */
+	static final class DateTerm extends Query {
+
+		final LocalDate from;
+
+		final LocalDate to;
+
+		DateTerm(LocalDate from, LocalDate to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			long day = photo.getEpochDay();
+			return day >= from.toEpochDay() && day <= to.toEpochDay();
+		}
+
+		@Override
+		public String toString() {
+			return "date:" + (from.equals(LocalDate.MIN) ? "" : from) + ".." + (to.equals(LocalDate.MAX) ? "" : to);
+		}
+	}
+
+	/**
+	 * Photos every part matches.
+	 */
+	static final class And extends Query {
+
+		final List<Query> parts;
+
+		And(List<Query> parts) {
+			this.parts = Collections.unmodifiableList(new ArrayList<Query>(parts));
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			for (Query part : parts) {
+				if (!part.matches(photo))
+					return false;
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return join(parts, " AND ");
+		}
+	}
+
+	/**
+	 * Photos any part matches.
+	 */
+	static final class Or extends Query {
+
+		final List<Query> parts;
+
+		Or(List<Query> parts) {
+			this.parts = Collections.unmodifiableList(new ArrayList<Query>(parts));
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			for (Query part : parts) {
+				if (part.matches(photo))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public String toString() {
+			return join(parts, " OR ");
+		}
+	}
+
+	/**
+	 * Photos the part doesn't match.
+	 */
+	static final class Not extends Query {
+
+		final Query part;
+
+		Not(Query part) {
+			this.part = part;
+		}
+
+		@Override
+		boolean matches(Photo photo) {
+			return !part.matches(photo);
+		}
+
+		@Override
+		public String toString() {
+			return "NOT " + bracket(part);
+		}
+	}
+
+	private static String join(List<Query> parts, String operator) {
+		StringBuilder out = new StringBuilder();
+		for (Query part : parts) {
+			if (out.length() > 0)
+				out.append(operator);
+			out.append(bracket(part));
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Makes a tag name or value the same for any mix of case, as {@link TagIndex TagIndex} does.
+	 */
+	private static String normalize(String s) {
+		return s.trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static String bracket(Query part) {
+		return part instanceof And || part instanceof Or ? "(" + part + ")" : part.toString();
+	}
+}
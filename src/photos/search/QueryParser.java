@@ -0,0 +1,294 @@
+package photos.search;
+
+import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads a {@link Query Query} from text.
+ *
+ * <p>
+ * A query is made of terms combined with <code>AND</code>, <code>OR</code>, <code>NOT</code> and
+ * parentheses. <code>NOT</code> binds tightest, then <code>AND</code>, then <code>OR</code>, and terms
+ * written next to each other are combined with <code>AND</code>. Operators can be written in any case.
+ * </p>
+ *
+ * <ul>
+ * <li><code>person:ed</code> matches photos tagged person ed. Names and values are compared ignoring case,
+ * and a value with spaces is put in quotes: <code>person:"ed smith"</code>.</li>
+ * <li><code>show:*</code> matches photos with any show tag.</li>
+ * <li><code>beach</code>, or <code>caption:beach</code>, matches photos with the word beach in their
+ * caption, <code>sun*</code> photos with a word starting with sun, and <code>"red car"</code> photos with
+ * those words one after the other. Photos found by caption are listed best match first.</li>
+ * <li><code>date:2014</code>, <code>date:2014-03</code> and <code>date:2014-03-05</code> match photos taken
+ * in that year, month or day, and <code>date:2014..2016-06</code> from the start of the first to the end
+ * of the second. Either end of a range can be left out.</li>
+ * </ul>
+ *
+ * <p>
+ * For example <code>person:ed AND (location:mars OR location:earth) AND NOT show:* AND date:2014..2016</code>.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class QueryParser {
+
+	/**
+	 * Name of the term that matches dates instead of tags.
+	 */
+	public static final String DATE = "date";
+
+	/**
+	 * Name of the term that matches words of the captions instead of tags.
+	 */
+	public static final String CAPTION = "caption";
+
+	private final String text;
+
+	private int pos;
+
+	private QueryParser(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Reads a query.
+	 *
+	 * @param text
+	 *            the query
+	 * @return the query read
+	 * @throws ParseException
+	 *             if the text is not a query; the offset is where the problem was found
+	 */
+	public static Query parse(String text) throws ParseException {
+		QueryParser parser = new QueryParser(text);
+
+		Query query = parser.or();
+		parser.skipSpace();
+		if (parser.pos < text.length())
+			throw parser.error("Unexpected \"" + text.charAt(parser.pos) + "\"");
+
+		return query;
+	}
+
+	private Query or() throws ParseException {
+		List<Query> parts = new ArrayList<Query>();
+		parts.add(and());
+
+		while (keyword("OR"))
+			parts.add(and());
+
+		return Query.or(parts);
+	}
+
+	private Query and() throws ParseException {
+		List<Query> parts = new ArrayList<Query>();
+		parts.add(not());
+
+		while (true) {
+			if (keyword("AND")) {
+				parts.add(not());
+				continue;
+			}
+
+			// a term straight after another means AND
+			skipSpace();
+			if (pos < text.length() && text.charAt(pos) != ')' && !isKeyword("OR"))
+				parts.add(not());
+			else
+				break;
+		}
+
+		return Query.and(parts);
+	}
+
+	private Query not() throws ParseException {
+		if (keyword("NOT"))
+			return Query.not(not());
+
+		skipSpace();
+		if (pos < text.length() && text.charAt(pos) == '(') {
+			int open = pos++;
+			Query query = or();
+
+			skipSpace();
+			if (pos == text.length() || text.charAt(pos) != ')') {
+				pos = open;
+				throw error("\"(\" is never closed");
+			}
+			pos++;
+
+			return query;
+		}
+
+		return term();
+	}
+
+	private Query term() throws ParseException {
+		skipSpace();
+		int start = pos;
+
+		// a phrase in quotes searches the captions
+		if (pos < text.length() && text.charAt(pos) == '"')
+			return caption(quoted() + word(), start);
+
+		String name = word();
+		if (name.isEmpty())
+			throw error(pos == text.length() ? "The query ends too soon" : "Expected a term like person:ed");
+
+		// so does a word on its own
+		int colon = name.indexOf(':');
+		if (colon == -1)
+			return caption(name, start);
+
+		if (colon == 0) {
+			pos = start;
+			throw error("\"" + name + "\" has no tag name");
+		}
+
+		String value = name.substring(colon + 1);
+		name = name.substring(0, colon);
+
+		if (value.isEmpty()) {
+			if (pos < text.length() && text.charAt(pos) == '"')
+				value = quoted();
+			else {
+				pos = start;
+				throw error("\"" + name + "\" has no value");
+			}
+		}
+
+		if (name.equalsIgnoreCase(DATE))
+			return dates(value, start);
+
+		if (name.equalsIgnoreCase(CAPTION))
+			return caption(value, start);
+
+		return Query.tag(name, value.equals("*") ? null : value);
+	}
+
+	/**
+	 * Makes a caption term, if the text has any words to look for.
+	 */
+	private Query caption(String value, int start) throws ParseException {
+		if (CaptionIndex.tokenize(value).isEmpty()) {
+			pos = start;
+			throw error("\"" + value + "\" has no words to look for in the captions");
+		}
+
+		return Query.caption(value);
+	}
+
+	/**
+	 * Reads a date or range of dates.
+	 */
+	private Query dates(String value, int start) throws ParseException {
+		int dots = value.indexOf("..");
+
+		try {
+			if (dots == -1)
+				return Query.dates(first(value), last(value));
+
+			String from = value.substring(0, dots);
+			String to = value.substring(dots + 2);
+
+			return Query.dates(from.isEmpty() ? LocalDate.MIN : first(from), to.isEmpty() ? LocalDate.MAX : last(to));
+		} catch (DateTimeException | NumberFormatException e) {
+			pos = start;
+			throw error("\"" + value + "\" is not a date like 2014, 2014-03 or 2014-03-05, or a range like 2014..2016");
+		}
+	}
+
+	/**
+	 * Returns the first day of a year, month or day.
+	 */
+	private static LocalDate first(String date) {
+		switch (date.length()) {
+		case 4:
+			return LocalDate.of(Integer.parseInt(date), 1, 1);
+		case 7:
+			return YearMonth.parse(date).atDay(1);
+		default:
+			return LocalDate.parse(date);
+		}
+	}
+
+	/**
+	 * Returns the last day of a year, month or day.
+	 */
+	private static LocalDate last(String date) {
+		switch (date.length()) {
+		case 4:
+			return LocalDate.of(Integer.parseInt(date), 12, 31);
+		case 7:
+			return YearMonth.parse(date).atEndOfMonth();
+		default:
+			return LocalDate.parse(date);
+		}
+	}
+
+	/**
+	 * Reads up to the next space, parenthesis or quote.
+	 */
+	private String word() {
+		int start = pos;
+		while (pos < text.length()) {
+			char c = text.charAt(pos);
+			if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '"')
+				break;
+			pos++;
+		}
+		return text.substring(start, pos);
+	}
+
+	/**
+	 * Reads a value in quotes.
+	 */
+	private String quoted() throws ParseException {
+		int open = pos++;
+		int close = text.indexOf('"', pos);
+		if (close == -1) {
+			pos = open;
+			throw error("The quote is never closed");
+		}
+
+		pos = close + 1;
+		return text.substring(open + 1, close);
+	}
+
+	/**
+	 * Reads the given operator if it is next.
+	 */
+	private boolean keyword(String keyword) {
+		if (!isKeyword(keyword))
+			return false;
+
+		pos += keyword.length();
+		return true;
+	}
+
+	private boolean isKeyword(String keyword) {
+		skipSpace();
+
+		int end = pos + keyword.length();
+		if (end > text.length() || !text.substring(pos, end).toUpperCase(Locale.ROOT).equals(keyword))
+			return false;
+
+		// "ORANGE" or "or:x" is not an operator
+		return end == text.length() || Character.isWhitespace(text.charAt(end)) || text.charAt(end) == '(';
+	}
+
+	private void skipSpace() {
+		while (pos < text.length() && Character.isWhitespace(text.charAt(pos)))
+			pos++;
+	}
+
+	private ParseException error(String message) {
+		return new ParseException(message, pos);
+	}
+}
@@ -0,0 +1,209 @@
+package photos.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import photos.search.Query.And;
+import photos.search.Query.DateTerm;
+import photos.search.Query.Not;
+import photos.search.Query.Or;
+import photos.search.Query.TagTerm;
+import photos.search.Query.TextTerm;
+
+/**
+ * Runs a {@link Query Query} against a user's {@link UserIndex UserIndex}, within a scope such as all of
+ * the user's photos or one album.
+ *
+ * <p>
+ * The index knows about how many photos each tag, caption word and range of dates has without collecting
+ * them, so the parts of an AND are run from the one expected to match the fewest photos to the one
+ * expected to match the most. Each part only narrows what the parts before it found, and once nothing is
+ * left the rest are not run at all. NOT parts are taken away at the end, from what the other parts found,
+ * instead of from every photo.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class QueryPlanner {
+
+	private final UserIndex index;
+
+	private final IntSet scope;
+
+	/**
+	 * Creates a planner for a user's photos.
+	 *
+	 * @param index
+	 *            the user's index
+	 * @param scope
+	 *            ids of the photos to search, such as {@link UserIndex#all() all} of them or those
+	 *            {@link UserIndex#inAlbum(photos.model.Album) in an album}
+	 */
+	public QueryPlanner(UserIndex index, IntSet scope) {
+		this.index = index;
+		this.scope = scope;
+	}
+
+	/**
+	 * Finds the photos in the scope that match a query.
+	 *
+	 * @param query
+	 *            query to run
+	 * @return ids of the matching photos
+	 */
+	public IntSet run(Query query) {
+		if (query instanceof And)
+			return and(((And) query).parts);
+
+		List<Query> parts = new ArrayList<Query>();
+		parts.add(query);
+		return and(parts);
+	}
+
+	/**
+	 * Orders the photos a query found, best match first. Photos are ranked by how well their captions match
+	 * the query's caption words; if the query has none, they are left in order of their ids.
+	 *
+	 * @param query
+	 *            the query that was run
+	 * @param found
+	 *            ids of the photos it found
+	 * @return the ids, in order
+	 */
+	public int[] rank(Query query, IntSet found) {
+		List<List<String>> phrases = new ArrayList<List<String>>();
+		List<Boolean> prefixes = new ArrayList<Boolean>();
+		collectText(query, phrases, prefixes);
+
+		if (phrases.isEmpty())
+			return found.toArray();
+
+		return index.rankByCaption(found, phrases, prefixes);
+	}
+
+	/**
+	 * Estimates the number of photos a query matches, without running it.
+	 *
+	 * @param query
+	 *            query to estimate
+	 * @return the estimate, which may be more than the real number but is never less
+	 */
+	public int estimate(Query query) {
+		if (query instanceof TagTerm) {
+			TagTerm tag = (TagTerm) query;
+			return Math.min(scope.size(), index.countWithTag(tag.name, tag.value));
+		}
+
+		if (query instanceof DateTerm) {
+			DateTerm dates = (DateTerm) query;
+			return Math.min(scope.size(), index.countTakenBetween(dates.from, dates.to));
+		}
+
+		if (query instanceof TextTerm) {
+			TextTerm text = (TextTerm) query;
+			return Math.min(scope.size(), index.countWithCaption(text.words, text.prefix));
+		}
+
+		if (query instanceof Not)
+			return scope.size();
+
+		if (query instanceof Or) {
+			long sum = 0;
+			for (Query part : ((Or) query).parts)
+				sum += estimate(part);
+			return (int) Math.min(scope.size(), sum);
+		}
+
+		int min = scope.size();
+		for (Query part : ((And) query).parts) {
+			if (!(part instanceof Not))
+				min = Math.min(min, estimate(part));
+		}
+		return min;
+	}
+
+	/**
+	 * Runs the parts of an AND, most selective first, stopping once nothing is left.
+	 */
+	private IntSet and(List<Query> parts) {
+		List<Query> positive = new ArrayList<Query>();
+		List<Query> negative = new ArrayList<Query>();
+		for (Query part : parts) {
+			if (part instanceof Not)
+				negative.add(((Not) part).part);
+			else
+				positive.add(part);
+		}
+
+		// estimate each part once, not on every comparison
+		List<int[]> order = new ArrayList<int[]>();
+		for (int i = 0; i < positive.size(); i++)
+			order.add(new int[] { estimate(positive.get(i)), i });
+		order.sort(Comparator.comparingInt(entry -> entry[0]));
+
+		IntSet found = scope;
+		for (int[] entry : order) {
+			if (found.isEmpty() || entry[0] == 0)
+				return new IntSet();
+
+			found = IntSet.and(found, evaluate(positive.get(entry[1])));
+		}
+
+		for (Query part : negative) {
+			if (found.isEmpty())
+				break;
+
+			found = IntSet.andNot(found, evaluate(part));
+		}
+
+		return found;
+	}
+
+	/**
+	 * Collects the caption words of a query that photos are found by, leaving out those under a NOT.
+	 */
+	private static void collectText(Query query, List<List<String>> phrases, List<Boolean> prefixes) {
+		if (query instanceof TextTerm) {
+			phrases.add(((TextTerm) query).words);
+			prefixes.add(((TextTerm) query).prefix);
+		} else if (query instanceof And) {
+			for (Query part : ((And) query).parts)
+				collectText(part, phrases, prefixes);
+		} else if (query instanceof Or) {
+			for (Query part : ((Or) query).parts)
+				collectText(part, phrases, prefixes);
+		}
+	}
+
+	/**
+	 * Finds the photos a query matches, not yet limited to the scope.
+	 */
+	private IntSet evaluate(Query query) {
+		if (query instanceof TagTerm) {
+			TagTerm tag = (TagTerm) query;
+			return index.withTag(tag.name, tag.value);
+		}
+
+		if (query instanceof DateTerm) {
+			DateTerm dates = (DateTerm) query;
+			return index.takenBetween(dates.from, dates.to);
+		}
+
+		if (query instanceof TextTerm) {
+			TextTerm text = (TextTerm) query;
+			return index.withCaption(text.words, text.prefix);
+		}
+
+		if (query instanceof Or) {
+			IntSet found = new IntSet();
+			for (Query part : ((Or) query).parts)
+				found = IntSet.or(found, evaluate(part));
+			return found;
+		}
+
+		// nested ANDs and NOTs are worked out within the scope
+		return run(query);
+	}
+}
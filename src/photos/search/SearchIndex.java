@@ -0,0 +1,200 @@
+package photos.search;
+
+import java.util.IdentityHashMap;
+
+import photos.model.Album;
+import photos.model.ModelListener;
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+import photos.model.Tag;
+import photos.model.User;
+
+/**
+ * Keeps a {@link UserIndex UserIndex} for every user who has searched, and updates it as the user's albums
+ * and the tags of their photos change.
+ *
+ * <p>
+ * A user's index is only built the first time they search, so users who never search cost nothing. After
+ * that every change to their albums reaches the index through {@link photos.model.ModelEvents
+ * ModelEvents}, so searching never goes through every photo again.
+ * </p>
+ *
+ * <p>
+ * Meant to be used from the JavaFX application thread, like the model. A user's index is only changed
+ * while holding its lock, so a search can run on another thread by holding the index's lock while it
+ * reads it.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class SearchIndex implements ModelListener {
+
+	/**
+	 * The index used by the program, if one was made.
+	 */
+	private static SearchIndex shared;
+
+	/**
+	 * The index of each user who has searched.
+	 */
+	private final IdentityHashMap<User, UserIndex> users = new IdentityHashMap<User, UserIndex>();
+
+	/**
+	 * Sets the index used by the program.
+	 *
+	 * @param index
+	 *            the program's index
+	 */
+	public static void setShared(SearchIndex index) {
+		shared = index;
+	}
+
+	/**
+	 * Gets the index used by the program.
+	 *
+	 * @return the program's index, or <code>null</code> if none was made
+	 */
+	public static SearchIndex getShared() {
+		return shared;
+	}
+
+	/**
+	 * Gets the index of a user's albums, building it if the user hasn't searched before.
+	 *
+	 * @param user
+	 *            user who is searching
+	 * @return the user's index
+	 */
+	public UserIndex forUser(User user) {
+		UserIndex index = users.get(user);
+		if (index == null) {
+			index = new UserIndex(user);
+			users.put(user, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Drops the index of a user who was deleted.
+	 *
+	 * @param user
+	 *            user who was deleted
+	 */
+	public void userRemoved(User user) {
+		users.remove(user);
+	}
+
+	@Override
+	public void albumAdded(User user, Album album) {
+		UserIndex index = users.get(user);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			for (Photo photo : album.getPhotos())
+				index.photoAdded(album, photo);
+		}
+	}
+
+	@Override
+	public void albumRemoved(User user, Album album) {
+		UserIndex index = users.get(user);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			index.albumRemoved(album);
+		}
+	}
+
+	@Override
+	public void photoAdded(Album album, Photo photo) {
+		UserIndex index = indexOf(album);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			index.photoAdded(album, photo);
+		}
+	}
+
+	@Override
+	public void photoRemoved(Album album, Photo photo) {
+		UserIndex index = indexOf(album);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			index.photoRemoved(album, photo);
+		}
+	}
+
+	@Override
+	public void tagAdded(Photo photo, Tag tag) {
+		// a photo sent to other users is shared by them, so every index may have it; an index only
+		// changes its entry if the entry is this very photo, not another user's photo of the same file
+		for (UserIndex index : users.values()) {
+			synchronized (index) {
+				index.tagAdded(photo, tag);
+			}
+		}
+	}
+
+	@Override
+	public void tagRemoved(Photo photo, Tag tag) {
+		for (UserIndex index : users.values()) {
+			synchronized (index) {
+				index.tagRemoved(photo, tag);
+			}
+		}
+	}
+
+	@Override
+	public void captionChanged(Photo photo) {
+		for (UserIndex index : users.values()) {
+			synchronized (index) {
+				index.captionChanged(photo);
+			}
+		}
+	}
+
+	@Override
+	public void smartAlbumAdded(User user, SmartAlbum smartAlbum) {
+		UserIndex index = users.get(user);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			index.smartAlbumAdded(smartAlbum);
+		}
+	}
+
+	@Override
+	public void smartAlbumRemoved(User user, SmartAlbum smartAlbum) {
+		UserIndex index = users.get(user);
+		if (index == null)
+			return;
+
+		synchronized (index) {
+			index.smartAlbumRemoved(smartAlbum);
+		}
+	}
+
+	/**
+	 * Returns the index covering an album, or <code>null</code> if the album is an inbox, has no owner, or
+	 * its owner hasn't searched.
+	 */
+	private UserIndex indexOf(Album album) {
+		User owner = album.getOwner();
+		if (owner == null)
+			return null;
+
+		UserIndex index = users.get(owner);
+		if (index == null || album == owner.getInbox())
+			return null;
+
+		return index;
+	}
+}
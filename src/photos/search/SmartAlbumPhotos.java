@@ -0,0 +1,168 @@
+package photos.search;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.TreeMap;
+
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+
+/**
+ * The photos of one {@link SmartAlbum SmartAlbum}: the photos in the user's albums that match its query.
+ *
+ * <p>
+ * The query is run once, when the user's index is built or the smart album is made. After that each photo
+ * that is added, removed, tagged or captioned is checked against the query on its own, so the album stays
+ * current without searching again, and its size and dates can be shown at any time without any work.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class SmartAlbumPhotos {
+
+	/**
+	 * The parsed query, or <code>null</code> if the saved text can't be read, in which case nothing
+	 * matches.
+	 */
+	private final Query query;
+
+	/**
+	 * Ids of the matching photos.
+	 */
+	private final IntSet ids = new IntSet();
+
+	/**
+	 * Number of matching photos taken on each day, by day, for the first and last date.
+	 */
+	private final TreeMap<Long, Integer> days = new TreeMap<Long, Integer>();
+
+	/**
+	 * Finds the photos of a smart album.
+	 *
+	 * @param smartAlbum
+	 *            the smart album
+	 * @param index
+	 *            index of the user's photos
+	 */
+	SmartAlbumPhotos(SmartAlbum smartAlbum, UserIndex index) {
+		Query parsed = null;
+		try {
+			parsed = QueryParser.parse(smartAlbum.getQuery());
+		} catch (ParseException e) {
+			e.printStackTrace();
+		}
+		query = parsed;
+
+		if (query == null)
+			return;
+
+		for (int id : new QueryPlanner(index, index.all()).run(query).toArray())
+			add(id, index.photo(id));
+	}
+
+	/**
+	 * Gets the query of the smart album.
+	 *
+	 * @return the query, or <code>null</code> if it couldn't be read
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	/**
+	 * Gets the photos of the smart album.
+	 *
+	 * @return ids of the matching photos, which must not be changed
+	 */
+	public IntSet ids() {
+		return ids;
+	}
+
+	/**
+	 * Gets the number of photos in the smart album.
+	 *
+	 * @return number of matching photos
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	/**
+	 * Gets the day the earliest photo was taken.
+	 *
+	 * @return the earliest day, or <code>null</code> if the album is empty
+	 */
+	public LocalDate getFirstDate() {
+		return days.isEmpty() ? null : LocalDate.ofEpochDay(days.firstKey());
+	}
+
+	/**
+	 * Gets the day the latest photo was taken.
+	 *
+	 * @return the latest day, or <code>null</code> if the album is empty
+	 */
+	public LocalDate getLastDate() {
+		return days.isEmpty() ? null : LocalDate.ofEpochDay(days.lastKey());
+	}
+
+	/**
+	 * Gets the dates of the earliest and latest photos, written the way
+	 * {@link photos.model.Album#getDateRange() Album.getDateRange} writes them.
+	 *
+	 * @return the date range, or an empty string if the album is empty
+	 */
+	public String getDateRange() {
+		DateTimeFormatter format = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+
+		if (ids.isEmpty())
+			return "";
+
+		if (ids.size() == 1)
+			return format.format(getFirstDate());
+
+		return format.format(getFirstDate()) + " - " + format.format(getLastDate());
+	}
+
+	/**
+	 * Checks a photo that was added or changed against the query, adding it or taking it out.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param photo
+	 *            the photo, as it is now
+	 */
+	void check(int id, Photo photo) {
+		boolean matches = query != null && query.matches(photo);
+		if (matches && !ids.contains(id))
+			add(id, photo);
+		else if (!matches && ids.contains(id))
+			remove(id, photo);
+	}
+
+	/**
+	 * Takes out a photo that left the user's albums.
+	 *
+	 * @param id
+	 *            id the photo had
+	 * @param photo
+	 *            the photo
+	 */
+	void remove(int id, Photo photo) {
+		if (!ids.remove(id))
+			return;
+
+		long day = photo.getEpochDay();
+		int count = days.get(day);
+		if (count == 1)
+			days.remove(day);
+		else
+			days.put(day, count - 1);
+	}
+
+	private void add(int id, Photo photo) {
+		ids.add(id);
+		days.merge(photo.getEpochDay(), 1, Integer::sum);
+	}
+}
@@ -0,0 +1,167 @@
+package photos.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+import photos.model.Tag;
+import photos.model.TagStrings;
+
+/**
+ * The tag names and values used in a user's albums, with the number of photos using each, to suggest
+ * completions as tags are typed.
+ *
+ * <p>
+ * The strings themselves are kept by {@link TagStrings TagStrings}; the dictionary only counts their
+ * numbers. To complete a prefix, the strings starting with it are listed in alphabetical order and the
+ * ones the user's photos use most are kept. Tags are saved in lower case, so what has been typed is
+ * completed in lower case.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class TagDictionary {
+
+	/**
+	 * Most suggestions given for one prefix by default.
+	 */
+	public static final int SUGGESTIONS = 8;
+
+	/**
+	 * Photo tags with each name, by the name's number. Names no photo has are left out.
+	 */
+	private final HashMap<Integer, Integer> names = new HashMap<Integer, Integer>();
+
+	/**
+	 * Photo tags with each value of each name, by the numbers of the name and value. Values no photo has
+	 * are left out.
+	 */
+	private final HashMap<Integer, HashMap<Integer, Integer>> values = new HashMap<Integer, HashMap<Integer, Integer>>();
+
+	/**
+	 * Counts one more photo with a tag.
+	 *
+	 * @param tag
+	 *            the tag
+	 */
+	public void add(Tag tag) {
+		change(tag, 1);
+	}
+
+	/**
+	 * Counts one less photo with a tag.
+	 *
+	 * @param tag
+	 *            the tag
+	 */
+	public void remove(Tag tag) {
+		change(tag, -1);
+	}
+
+	/**
+	 * Suggests tag names starting with what has been typed, most used first.
+	 *
+	 * @param prefix
+	 *            what has been typed
+	 * @param max
+	 *            most names to suggest
+	 * @return the names
+	 */
+	public List<String> completeName(String prefix, int max) {
+		return mostUsed(TagStrings.startingWith(normalize(prefix)), names, max);
+	}
+
+	/**
+	 * Suggests values of a tag starting with what has been typed, most used first.
+	 *
+	 * @param name
+	 *            name of the tag
+	 * @param prefix
+	 *            what has been typed
+	 * @param max
+	 *            most values to suggest
+	 * @return the values
+	 */
+	public List<String> completeValue(String name, String prefix, int max) {
+		HashMap<Integer, Integer> counts = values.get(TagStrings.find(normalize(name)));
+		if (counts == null)
+			return Collections.<String>emptyList();
+		return mostUsed(TagStrings.startingWith(normalize(prefix)), counts, max);
+	}
+
+	private void change(Tag tag, int delta) {
+		Integer name = tag.getNameNumber();
+
+		HashMap<Integer, Integer> counts = values.get(name);
+		if (counts == null) {
+			if (delta < 0)
+				return;
+			counts = new HashMap<Integer, Integer>();
+			values.put(name, counts);
+		}
+
+		count(names, name, delta);
+		count(counts, tag.getValueNumber(), delta);
+
+		if (counts.isEmpty())
+			values.remove(name);
+	}
+
+	/**
+	 * Changes a count, leaving it out once it drops to 0.
+	 */
+	private static void count(HashMap<Integer, Integer> counts, Integer id, int delta) {
+		Integer count = counts.get(id);
+		int changed = (count == null ? 0 : count) + delta;
+		if (changed > 0)
+			counts.put(id, changed);
+		else
+			counts.remove(id);
+	}
+
+	/**
+	 * Lists the most counted of some strings, highest count first and in the given order for equal
+	 * counts.
+	 *
+	 * @param ids
+	 *            numbers of the strings, in alphabetical order
+	 * @param counts
+	 *            count of each number; numbers left out aren't listed
+	 * @param max
+	 *            most strings to list
+	 * @return the strings
+	 */
+	private static List<String> mostUsed(int[] ids, HashMap<Integer, Integer> counts, int max) {
+		int[] best = new int[Math.max(0, max)];
+		int[] bestCounts = new int[best.length];
+		int size = 0;
+
+		for (int id : ids) {
+			Integer count = counts.get(id);
+			if (count == null || size == best.length && (size == 0 || count <= bestCounts[size - 1]))
+				continue;
+
+			// slide the lower counts down, dropping the last if the list is full
+			int i = size < best.length ? size++ : size - 1;
+			while (i > 0 && bestCounts[i - 1] < count) {
+				best[i] = best[i - 1];
+				bestCounts[i] = bestCounts[i - 1];
+				i--;
+			}
+			best[i] = id;
+			bestCounts[i] = count;
+		}
+
+		List<String> words = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			words.add(TagStrings.string(best[i]));
+		return words;
+	}
+
+	private static String normalize(String s) {
+		return s.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,249 @@
+package photos.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import photos.model.Tag;
+
+/**
+ * Maps each tag to the ids of the photos that have it.
+ *
+ * <p>
+ * Tags are looked up ignoring case, so "Person: Ed" finds the photos tagged "person: ed". The tags are
+ * grouped by name, and each name also keeps the ids of the photos with any value of it, so searching for
+ * a name with any value and counting the photos with a name don't have to combine its values.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class TagIndex {
+
+	/**
+	 * Orders facets most used first, then alphabetically.
+	 */
+	private static final Comparator<Facet> MOST_USED = Comparator.comparingInt(Facet::getCount).reversed()
+			.thenComparing(Facet::getName);
+
+	/**
+	 * The photos with each tag name, by name in lower case. Names no photo has are left out.
+	 */
+	private final HashMap<String, Name> names = new HashMap<String, Name>();
+
+	/**
+	 * Counts the changes to the index, so counts made from it can tell whether they are still current.
+	 */
+	private long version;
+
+	/**
+	 * The photos with one tag name.
+	 */
+	private static class Name {
+
+		/**
+		 * Ids of the photos with each value, by value in lower case. Values no photo has are left out.
+		 */
+		final HashMap<String, IntSet> values = new HashMap<String, IntSet>();
+
+		/**
+		 * Ids of the photos with any value.
+		 */
+		final IntSet any = new IntSet();
+	}
+
+	/**
+	 * Records that a photo has a tag.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param tag
+	 *            one of its tags
+	 */
+	public void add(int id, Tag tag) {
+		String name = normalize(tag.getName());
+
+		Name entry = names.get(name);
+		if (entry == null) {
+			entry = new Name();
+			names.put(name, entry);
+		}
+
+		String value = normalize(tag.getValue());
+		IntSet ids = entry.values.get(value);
+		if (ids == null) {
+			ids = new IntSet();
+			entry.values.put(value, ids);
+		}
+
+		ids.add(id);
+		entry.any.add(id);
+		version++;
+	}
+
+	/**
+	 * Records that a photo no longer has a tag.
+	 *
+	 * @param id
+	 *            id of the photo
+	 * @param tag
+	 *            the tag it lost
+	 * @param remaining
+	 *            the tags the photo still has; if one of them differs from the lost tag only in case, the
+	 *            photo is still found by it
+	 */
+	public void remove(int id, Tag tag, List<Tag> remaining) {
+		String name = normalize(tag.getName());
+		String value = normalize(tag.getValue());
+
+		boolean sameName = false;
+		for (Tag other : remaining) {
+			if (name.equals(normalize(other.getName()))) {
+				if (value.equals(normalize(other.getValue())))
+					return;
+				sameName = true;
+			}
+		}
+
+		Name entry = names.get(name);
+		if (entry == null)
+			return;
+
+		IntSet ids = entry.values.get(value);
+		if (ids != null && ids.remove(id) && ids.isEmpty())
+			entry.values.remove(value);
+
+		// the photo still has the name if it has another value of it
+		if (!sameName)
+			entry.any.remove(id);
+		if (entry.values.isEmpty())
+			names.remove(name);
+
+		version++;
+	}
+
+	/**
+	 * Gets the photos with a tag.
+	 *
+	 * @param name
+	 *            name of the tag
+	 * @param value
+	 *            value of the tag
+	 * @return ids of the photos with the tag, which must not be changed
+	 */
+	public IntSet get(String name, String value) {
+		Name entry = names.get(normalize(name));
+		IntSet ids = entry == null ? null : entry.values.get(normalize(value));
+		return ids == null ? new IntSet() : ids;
+	}
+
+	/**
+	 * Gets the photos with a tag of the given name, whatever its value.
+	 *
+	 * @param name
+	 *            name of the tags
+	 * @return ids of the photos with any tag of that name, which must not be changed
+	 */
+	public IntSet getAny(String name) {
+		Name entry = names.get(normalize(name));
+		return entry == null ? new IntSet() : entry.any;
+	}
+
+	/**
+	 * Counts the photos with a tag of the given name, without collecting them.
+	 *
+	 * @param name
+	 *            name of the tags
+	 * @return number of photos with any tag of that name
+	 */
+	public int countAny(String name) {
+		return getAny(name).size();
+	}
+
+	/**
+	 * Gets the number of changes made to the index so far.
+	 *
+	 * @return a number that changes whenever a tag is added or removed
+	 */
+	public long version() {
+		return version;
+	}
+
+	/**
+	 * Counts the photos in a scope with each tag name and value. Each count is the size of a posting list
+	 * within the scope, so no photo's tags are read.
+	 *
+	 * @param scope
+	 *            ids of the photos to count
+	 * @return a facet for each name the scope has, most used first
+	 */
+	public List<Facet> facets(IntSet scope) {
+		List<Facet> facets = new ArrayList<Facet>();
+
+		for (Map.Entry<String, Name> name : names.entrySet()) {
+			int count = IntSet.andSize(scope, name.getValue().any);
+			if (count == 0)
+				continue;
+
+			List<Facet> values = new ArrayList<Facet>();
+			for (Map.Entry<String, IntSet> value : name.getValue().values.entrySet()) {
+				int valueCount = IntSet.andSize(scope, value.getValue());
+				if (valueCount > 0)
+					values.add(new Facet(value.getKey(), valueCount, value.getValue(),
+							Collections.<Facet>emptyList()));
+			}
+			values.sort(MOST_USED);
+
+			facets.add(new Facet(name.getKey(), count, name.getValue().any, values));
+		}
+
+		facets.sort(MOST_USED);
+		return facets;
+	}
+
+	/**
+	 * Counts the photos in a scope with each tag name and value, the same as {@link #facets(IntSet)}, for a
+	 * scope that is part of one already counted. Names and values none of the larger scope had can't be in
+	 * the smaller one, so only those that were counted before are counted again.
+	 *
+	 * @param previous
+	 *            the facets of the larger scope, counted since the index last changed
+	 * @param scope
+	 *            ids of the photos to count, all in the larger scope
+	 * @return a facet for each name the scope has, most used first
+	 */
+	public List<Facet> narrow(List<Facet> previous, IntSet scope) {
+		List<Facet> facets = new ArrayList<Facet>();
+
+		for (Facet name : previous) {
+			int count = IntSet.andSize(scope, name.ids);
+			if (count == 0)
+				continue;
+
+			List<Facet> values = new ArrayList<Facet>();
+			for (Facet value : name.values()) {
+				int valueCount = IntSet.andSize(scope, value.ids);
+				if (valueCount > 0)
+					values.add(new Facet(value.getName(), valueCount, value.ids,
+							Collections.<Facet>emptyList()));
+			}
+			values.sort(MOST_USED);
+
+			facets.add(new Facet(name.getName(), count, name.ids, values));
+		}
+
+		facets.sort(MOST_USED);
+		return facets;
+	}
+
+	/**
+	 * Makes a tag name or value the same for any mix of case.
+	 */
+	private static String normalize(String s) {
+		return s.trim().toLowerCase(Locale.ROOT);
+	}
+}
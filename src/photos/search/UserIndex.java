@@ -0,0 +1,381 @@
+package photos.search;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import photos.model.Album;
+import photos.model.Photo;
+import photos.model.SmartAlbum;
+import photos.model.Tag;
+import photos.model.User;
+
+/**
+ * The search indexes of one user's albums. The inbox is not searched, so it is not indexed.
+ *
+ * <p>
+ * Built from the user's albums by {@link SearchIndex#forUser(User) SearchIndex.forUser} the first time
+ * the user searches, and kept up to date by {@link SearchIndex SearchIndex} as the albums change after
+ * that.
+ * </p>
+ *
+ * @author Nick Fasullo
+ *
+ */
+public class UserIndex {
+
+	/**
+	 * Ids of the photos in the user's albums.
+	 */
+	private final PhotoIds ids = new PhotoIds();
+
+	/**
+	 * Photos by tag.
+	 */
+	private final TagIndex tags = new TagIndex();
+
+	/**
+	 * Photos by the day they were taken.
+	 */
+	private final DateIndex dates = new DateIndex();
+
+	/**
+	 * Photos by the words of their captions.
+	 */
+	private final CaptionIndex captions = new CaptionIndex();
+
+	/**
+	 * Tag names and values, to suggest them as they are typed.
+	 */
+	private final TagDictionary dictionary = new TagDictionary();
+
+	/**
+	 * Photos by album, to search a single album.
+	 */
+	private final IdentityHashMap<Album, IntSet> albums = new IdentityHashMap<Album, IntSet>();
+
+	/**
+	 * The photos of each of the user's smart albums.
+	 */
+	private final IdentityHashMap<SmartAlbum, SmartAlbumPhotos> smartAlbums =
+			new IdentityHashMap<SmartAlbum, SmartAlbumPhotos>();
+
+	/**
+	 * Indexes the photos in a user's albums.
+	 *
+	 * @param user
+	 *            user to index
+	 */
+	UserIndex(User user) {
+		for (Album album : user.getAlbums()) {
+			for (Photo photo : album.getPhotos())
+				photoAdded(album, photo);
+		}
+
+		for (SmartAlbum smartAlbum : user.getSmartAlbums())
+			smartAlbumAdded(smartAlbum);
+	}
+
+	/**
+	 * Gets the tag names and values used in the user's albums.
+	 *
+	 * @return the user's tag dictionary
+	 */
+	public TagDictionary dictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Gets the photos by tag, to count them.
+	 *
+	 * @return the user's tag index
+	 */
+	TagIndex tags() {
+		return tags;
+	}
+
+	/**
+	 * Gets the photos with a tag.
+	 *
+	 * @param name
+	 *            name of the tag, compared ignoring case
+	 * @param value
+	 *            value of the tag, compared ignoring case, or <code>null</code> for any value
+	 * @return ids of the photos with the tag, which must not be changed
+	 */
+	public IntSet withTag(String name, String value) {
+		return value == null ? tags.getAny(name) : tags.get(name, value);
+	}
+
+	/**
+	 * Estimates the number of photos with a tag, without collecting them.
+	 *
+	 * @param name
+	 *            name of the tag, compared ignoring case
+	 * @param value
+	 *            value of the tag, compared ignoring case, or <code>null</code> for any value
+	 * @return number of photos with the tag
+	 */
+	public int countWithTag(String name, String value) {
+		return value == null ? tags.countAny(name) : tags.get(name, value).size();
+	}
+
+	/**
+	 * Gets the photos taken from one day to another.
+	 *
+	 * @param from
+	 *            first day
+	 * @param to
+	 *            last day
+	 * @return ids of the photos taken on or between the days
+	 */
+	public IntSet takenBetween(LocalDate from, LocalDate to) {
+		return dates.between(from.toEpochDay(), to.toEpochDay());
+	}
+
+	/**
+	 * Gets the photos whose captions have some words one after another.
+	 *
+	 * @param words
+	 *            the words, split by {@link CaptionIndex#tokenize(String) CaptionIndex.tokenize}
+	 * @param prefix
+	 *            whether the last word only has to start a word of the caption
+	 * @return ids of the matching photos
+	 */
+	public IntSet withCaption(List<String> words, boolean prefix) {
+		return captions.match(words, prefix);
+	}
+
+	/**
+	 * Estimates the number of photos whose captions have some words, without collecting them.
+	 *
+	 * @param words
+	 *            the words
+	 * @param prefix
+	 *            whether the last word only has to start a word of the caption
+	 * @return the estimate, which is never less than the real number
+	 */
+	public int countWithCaption(List<String> words, boolean prefix) {
+		return captions.estimate(words, prefix);
+	}
+
+	/**
+	 * Orders photos by how well their captions match the words searched for, best first.
+	 *
+	 * @param found
+	 *            ids of the photos to order
+	 * @param phrases
+	 *            the words searched for, as lists of words
+	 * @param prefixes
+	 *            for each list, whether its last word only had to start a word of the caption
+	 * @return the ids, best match first
+	 */
+	public int[] rankByCaption(IntSet found, List<List<String>> phrases, List<Boolean> prefixes) {
+		return captions.rank(found, phrases, prefixes);
+	}
+
+	/**
+	 * Counts the photos taken from one day to another, without collecting them.
+	 *
+	 * @param from
+	 *            first day
+	 * @param to
+	 *            last day
+	 * @return number of photos taken on or between the days
+	 */
+	public int countTakenBetween(LocalDate from, LocalDate to) {
+		return dates.count(from.toEpochDay(), to.toEpochDay());
+	}
+
+	/**
+	 * Gets every photo in the user's albums.
+	 *
+	 * @return ids of all the indexed photos, which must not be changed
+	 */
+	public IntSet all() {
+		return ids.all();
+	}
+
+	/**
+	 * Gets the photos in one of the user's albums.
+	 *
+	 * @param album
+	 *            album to look in
+	 * @return ids of the photos in the album
+	 */
+	public IntSet inAlbum(Album album) {
+		IntSet members = albums.get(album);
+		return members == null ? new IntSet() : members;
+	}
+
+	/**
+	 * Gets the photos of one of the user's smart albums.
+	 *
+	 * @param smartAlbum
+	 *            smart album to look in
+	 * @return the smart album's photos, kept up to date as the user's photos change
+	 */
+	public SmartAlbumPhotos inSmartAlbum(SmartAlbum smartAlbum) {
+		SmartAlbumPhotos photos = smartAlbums.get(smartAlbum);
+		if (photos == null)
+			photos = smartAlbumAdded(smartAlbum);
+		return photos;
+	}
+
+	/**
+	 * Gets the photos with the given ids.
+	 *
+	 * <p>
+	 * The photos are looked up when the list is made, so the list keeps the photos that were found even
+	 * after their ids are freed and given to other photos; it doesn't follow the albums if photos are later
+	 * taken out of them. Looking up a photo is only reading an array, so even a large result is listed in
+	 * far less time than it took to find. Called on another thread, the index's lock must be held.
+	 * </p>
+	 *
+	 * @param found
+	 *            ids of photos in the user's albums
+	 * @return the photos, in the order of their ids, which can't be changed
+	 */
+	public List<Photo> photos(IntSet found) {
+		return photos(found.toArray());
+	}
+
+	/**
+	 * Gets the photos with the given ids, in the given order, the same way as {@link #photos(IntSet)}.
+	 *
+	 * @param found
+	 *            ids of photos in the user's albums, in the order to list them
+	 * @return the photos, which can't be changed
+	 */
+	public List<Photo> photos(int[] found) {
+		Photo[] photos = new Photo[found.length];
+		for (int i = 0; i < found.length; i++)
+			photos[i] = ids.photo(found[i]);
+
+		return Collections.unmodifiableList(Arrays.asList(photos));
+	}
+
+	/**
+	 * Gets the number of photos in the user's albums.
+	 *
+	 * @return number of different photos indexed
+	 */
+	public int size() {
+		return ids.size();
+	}
+
+	void photoAdded(Album album, Photo photo) {
+		IntSet members = albums.get(album);
+		if (members == null) {
+			members = new IntSet();
+			albums.put(album, members);
+		}
+
+		int id = ids.add(photo);
+		if (id == -1) {
+			members.add(ids.id(photo));
+			return;
+		}
+		members.add(id);
+
+		for (Tag tag : photo.getTags()) {
+			tags.add(id, tag);
+			dictionary.add(tag);
+		}
+		dates.add(id, photo.getEpochDay());
+		captions.add(id, photo.getCaption());
+
+		for (SmartAlbumPhotos smartAlbum : smartAlbums.values())
+			smartAlbum.check(id, photo);
+	}
+
+	void photoRemoved(Album album, Photo photo) {
+		IntSet members = albums.get(album);
+		int id = ids.id(photo);
+		if (members != null && id != -1)
+			members.remove(id);
+
+		if (ids.remove(photo) == -1)
+			return;
+
+		List<Tag> none = Collections.emptyList();
+		for (Tag tag : photo.getTags()) {
+			tags.remove(id, tag, none);
+			dictionary.remove(tag);
+		}
+		dates.remove(id, photo.getEpochDay());
+		captions.remove(id);
+
+		for (SmartAlbumPhotos smartAlbum : smartAlbums.values())
+			smartAlbum.remove(id, photo);
+	}
+
+	void albumRemoved(Album album) {
+		for (Photo photo : album.getPhotos())
+			photoRemoved(album, photo);
+		albums.remove(album);
+	}
+
+	void captionChanged(Photo photo) {
+		int id = own(photo);
+		if (id != -1) {
+			captions.remove(id);
+			captions.add(id, photo.getCaption());
+			smartAlbumsChanged(id, photo);
+		}
+	}
+
+	void tagAdded(Photo photo, Tag tag) {
+		int id = own(photo);
+		if (id != -1) {
+			tags.add(id, tag);
+			dictionary.add(tag);
+			smartAlbumsChanged(id, photo);
+		}
+	}
+
+	void tagRemoved(Photo photo, Tag tag) {
+		int id = own(photo);
+		if (id != -1) {
+			tags.remove(id, tag, photo.getTags());
+			dictionary.remove(tag);
+			smartAlbumsChanged(id, photo);
+		}
+	}
+
+	SmartAlbumPhotos smartAlbumAdded(SmartAlbum smartAlbum) {
+		SmartAlbumPhotos photos = new SmartAlbumPhotos(smartAlbum, this);
+		smartAlbums.put(smartAlbum, photos);
+		return photos;
+	}
+
+	void smartAlbumRemoved(SmartAlbum smartAlbum) {
+		smartAlbums.remove(smartAlbum);
+	}
+
+	/**
+	 * Gets the photo with an id.
+	 */
+	Photo photo(int id) {
+		return ids.photo(id);
+	}
+
+	/**
+	 * Gets the id of a photo if it is this user's own photo. Another user's photo of the same file is
+	 * equal to it but is a different object, with its own tags and caption, so it gets -1.
+	 */
+	private int own(Photo photo) {
+		int id = ids.id(photo);
+		return id != -1 && ids.photo(id) == photo ? id : -1;
+	}
+
+	/**
+	 * Checks a photo whose tags or caption changed against the query of every smart album.
+	 */
+	private void smartAlbumsChanged(int id, Photo photo) {
+		for (SmartAlbumPhotos smartAlbum : smartAlbums.values())
+			smartAlbum.check(id, photo);
+	}
+}